@@ -0,0 +1,56 @@
+package praktika3;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Вимірювання циклу "запис + читання" списку кімнат для кожного формату збереження.
+ * Запуск: java -jar benchmarks/praktika3/target/benchmarks.jar [-rf json]
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoomSerializerBenchmarks {
+    @Param({"1000", "100000"})
+    int size;
+
+    @Param({"java", "binary"})
+    String codec;
+
+    private RoomCodec roomCodec;
+    private List<RoomData> rooms;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        roomCodec = codec.equals("java") ? new JavaRoomCodec() : new BinaryRoomCodec();
+        Random random = new Random(42);
+        rooms = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            RoomData room = new RoomData(random.nextInt(1000) + 1, random.nextInt(1000) + 1, random.nextInt(10) + 1);
+            room.compute();
+            rooms.add(room);
+        }
+        file = File.createTempFile("rooms", ".bin");
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public int roundTrip() throws IOException {
+        roomCodec.write(rooms, file.getPath());
+        return roomCodec.read(file.getPath()).size();
+    }
+}
@@ -0,0 +1,68 @@
+package praktika4;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Вимірювання обчислення параметрів кімнат (окремі об'єкти та пакет) і розбору
+ * двійкового текстового вводу. Результати наводяться на весь набір із size кімнат.
+ * Запуск: java -jar benchmarks/praktika4/target/benchmarks.jar [-rf json]
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoomBenchmarks {
+    @Param({"10000", "1000000"})
+    int size;
+
+    private RoomBatch batch;
+    private List<RoomData> rooms;
+    private ByteBuffer input;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        batch = new RoomBatch(size);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            int length = random.nextInt(1000) + 1, width = random.nextInt(1000) + 1, height = random.nextInt(10) + 1;
+            batch.add(length, width, height);
+            text.append(Integer.toBinaryString(length)).append(' ').append(Integer.toBinaryString(width))
+                    .append(' ').append(Integer.toBinaryString(height)).append('\n');
+        }
+        rooms = batch.toRooms(new TableRoomFactory());
+        input = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Benchmark
+    public long roomDataCompute() {
+        long sink = 0;
+        for (RoomData room : rooms) {
+            room.compute();
+            sink += room.getVolume();
+        }
+        return sink;
+    }
+
+    @Benchmark
+    public long roomBatchCompute() {
+        batch.compute();
+        return batch.getVolume(size - 1);
+    }
+
+    @Benchmark
+    public long binaryRoomParserFeed() {
+        long[] sink = new long[1];
+        input.rewind();
+        new BinaryRoomParser((length, width, height) -> sink[0] += length ^ width ^ height).feed(input).finish();
+        return sink[0];
+    }
+}
@@ -0,0 +1,56 @@
+package praktika5;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Вимірювання циклу "запис + читання" списку обчислень для кожного формату збереження.
+ * Запуск: java -jar benchmarks/praktika5/target/benchmarks.jar [-rf json]
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DemoBenchmarks {
+    @Param({"1000", "100000"})
+    int size;
+
+    @Param({"java", "binary"})
+    String codec;
+
+    private ComputationCodec computationCodec;
+    private List<ComputationData> computations;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        computationCodec = codec.equals("java") ? new JavaComputationCodec() : new BinaryComputationCodec();
+        Random random = new Random(42);
+        computations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ComputationData data = new ComputationData(random.nextDouble() * 1000);
+            data.setResult(Math.sqrt(data.getInput()));
+            computations.add(data);
+        }
+        file = File.createTempFile("computations", ".bin");
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public int roundTrip() throws IOException {
+        computationCodec.write(computations, file.getPath());
+        return computationCodec.read(file.getPath()).size();
+    }
+}
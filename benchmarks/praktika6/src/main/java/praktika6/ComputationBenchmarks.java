@@ -0,0 +1,225 @@
+package praktika6;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Вимірювання запитів ComputationManager і ShardedComputationManager для різних обсягів даних,
+ * пропускної здатності і затримки TaskQueue для кожного режиму планувальника
+ * та запису з кількох потоків у синхронізований список і StripedDoubleStore.
+ * Запуск: java -jar benchmarks/praktika6/target/benchmarks.jar [-rf json]
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComputationBenchmarks {
+    private static final int BATCH = 1000;
+    private static final int INGEST_PER_THREAD = 1_000_000;
+
+    /**
+     * Менеджер із size значеннями; паралельні потоки даних виконуються в пулі з threads потоків,
+     * з якого запускається запит
+     */
+    @State(Scope.Benchmark)
+    public static class ManagerState {
+        @Param({"10000", "1000000"})
+        int size;
+
+        @Param({"false", "true"})
+        boolean incremental;
+
+        @Param({"1", "4"})
+        int threads;
+
+        ComputationManager manager;
+        ForkJoinPool pool;
+
+        @Setup
+        public void setUp() {
+            manager = new ComputationManager(incremental);
+            Random random = new Random(42);
+            for (int i = 0; i < size; i++) {
+                manager.addData(random.nextDouble() * 100);
+            }
+            pool = new ForkJoinPool(threads);
+        }
+
+        @TearDown
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ShardedState {
+        @Param({"1000000"})
+        int size;
+
+        @Param({"1", "4"})
+        int shards;
+
+        ShardedComputationManager manager;
+
+        @Setup
+        public void setUp() {
+            manager = new ShardedComputationManager(shards, Partitioning.ROUND_ROBIN, false);
+            Random random = new Random(42);
+            for (int i = 0; i < size; i++) {
+                manager.addData(random.nextDouble() * 100);
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            manager.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class QueueState {
+        // Перелік SchedulerMode не публічний, тому JMH передає його назву
+        @Param({"VIRTUAL_THREADS", "WORK_STEALING", "BOUNDED_POOL"})
+        String mode;
+
+        final Task noOp = () -> { };
+        TaskQueue queue;
+
+        @Setup
+        public void setUp() {
+            queue = new TaskQueue(SchedulerMode.valueOf(mode), Runtime.getRuntime().availableProcessors(), 1024, RejectionPolicy.BLOCK);
+        }
+
+        @TearDown
+        public void tearDown() {
+            queue.shutdown();
+        }
+    }
+
+    /**
+     * Спільні сховища для запису з усіх потоків; створюються заново на кожну ітерацію,
+     * тому обсяг пам'яті обмежений INGEST_PER_THREAD значеннями на потік
+     */
+    @State(Scope.Benchmark)
+    public static class IngestState {
+        List<Double> list;
+        StripedDoubleStore store;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            list = Collections.synchronizedList(new ArrayList<>());
+            store = new StripedDoubleStore();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class IngestValue {
+        double next;
+    }
+
+    @Benchmark
+    public double managerFindMin(ManagerState state) {
+        return state.pool.submit(() -> state.manager.findMin()).join();
+    }
+
+    @Benchmark
+    public double managerFindMax(ManagerState state) {
+        return state.pool.submit(() -> state.manager.findMax()).join();
+    }
+
+    @Benchmark
+    public double managerComputeAverage(ManagerState state) {
+        return state.pool.submit(() -> state.manager.computeAverage()).join();
+    }
+
+    @Benchmark
+    public int managerFilterByCriterion(ManagerState state) {
+        return state.pool.submit(() -> state.manager.filterByCriterion(50).size()).join();
+    }
+
+    @Benchmark
+    public double shardedFindMin(ShardedState state) {
+        return state.manager.findMin();
+    }
+
+    @Benchmark
+    public double shardedFindMax(ShardedState state) {
+        return state.manager.findMax();
+    }
+
+    @Benchmark
+    public double shardedComputeAverage(ShardedState state) {
+        return state.manager.computeAverage();
+    }
+
+    @Benchmark
+    public int shardedFilterByCriterion(ShardedState state) {
+        return state.manager.filterByCriterion(50).size();
+    }
+
+    @Benchmark
+    public void taskQueueLatency(QueueState state) {
+        state.queue.submit(state.noOp).join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int taskQueueThroughput(QueueState state) {
+        CompletableFuture<?>[] results = new CompletableFuture<?>[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            results[i] = state.queue.submit(state.noOp);
+        }
+        CompletableFuture.allOf(results).join();
+        return results.length;
+    }
+
+    // Запис: кожна ітерація - INGEST_PER_THREAD значень з кожного потоку у нове сховище
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5, batchSize = INGEST_PER_THREAD)
+    @Measurement(iterations = 10, batchSize = INGEST_PER_THREAD)
+    public boolean ingestSynchronizedList(IngestState state, IngestValue value) {
+        return state.list.add(value.next++);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5, batchSize = INGEST_PER_THREAD)
+    @Measurement(iterations = 10, batchSize = INGEST_PER_THREAD)
+    public boolean ingestSynchronizedListContended(IngestState state, IngestValue value) {
+        return state.list.add(value.next++);
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5, batchSize = INGEST_PER_THREAD)
+    @Measurement(iterations = 10, batchSize = INGEST_PER_THREAD)
+    public void ingestStripedStore(IngestState state, IngestValue value) {
+        state.store.append(value.next++);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5, batchSize = INGEST_PER_THREAD)
+    @Measurement(iterations = 10, batchSize = INGEST_PER_THREAD)
+    public void ingestStripedStoreContended(IngestState state, IngestValue value) {
+        state.store.append(value.next++);
+    }
+}
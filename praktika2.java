@@ -1,4 +1,8 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Scanner;
 
 /**
@@ -22,6 +26,13 @@ class RoomData implements Serializable {
         compute();
     }
 
+    public RoomData(int length, int width, int height) {
+        this.length = length;
+        this.width = width;
+        this.height = height;
+        compute();
+    }
+
     /**
      * Method for calculating room parameters.
      */
@@ -31,11 +42,91 @@ class RoomData implements Serializable {
         this.volume = length * width * height;
     }
     
+    public int getLength() { return length; }
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
     public int getPerimeter() { return perimeter; }
     public int getArea() { return area; }
     public int getVolume() { return volume; }
 }
 
+/**
+ * Storage format for a RoomData object.
+ */
+interface RoomCodec {
+    void write(RoomData data, String filename) throws IOException;
+    RoomData read(String filename) throws IOException;
+}
+
+/**
+ * Standard Java serialization.
+ */
+class JavaRoomCodec implements RoomCodec {
+    @Override
+    public void write(RoomData data, String filename) throws IOException {
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+            oos.writeObject(data);
+        }
+    }
+
+    @Override
+    public RoomData read(String filename) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+            RoomData room = (RoomData) ois.readObject();
+            room.compute(); // Restore transient fields
+            return room;
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+}
+
+/**
+ * Compact fixed-layout binary format.
+ * Header: magic number and format version; body: length, width and height as raw ints.
+ * Derived values are recomputed on read, just like the transient fields.
+ */
+class BinaryRoomCodec implements RoomCodec {
+    static final int MAGIC = 0x524F4F4D; // "ROOM"
+    static final int VERSION = 1;
+    static final int FILE_SIZE = 20;
+
+    @Override
+    public void write(RoomData data, String filename) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(FILE_SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION)
+              .putInt(data.getLength()).putInt(data.getWidth()).putInt(data.getHeight());
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    @Override
+    public RoomData read(String filename) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(FILE_SIZE);
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Unexpected end of file " + filename);
+                }
+            }
+        }
+        buffer.flip();
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a binary room file: " + filename);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported format version " + version + " in " + filename);
+        }
+        return new RoomData(buffer.getInt(), buffer.getInt(), buffer.getInt());
+    }
+}
+
 /**
  * Class for demonstrating serialization and deserialization.
  */
@@ -46,8 +137,18 @@ class RoomSerializer {
      * @param filename File name for saving
      */
     public static void serializeData(RoomData data, String filename) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
-            oos.writeObject(data);
+        serializeData(data, filename, new JavaRoomCodec());
+    }
+
+    /**
+     * Method for serializing an object to a file in the given format.
+     * @param data RoomData object to serialize
+     * @param filename File name for saving
+     * @param codec Storage format
+     */
+    public static void serializeData(RoomData data, String filename, RoomCodec codec) {
+        try {
+            codec.write(data, filename);
             System.out.println("Дані збережено у файл " + filename);
         } catch (IOException e) {
             e.printStackTrace();
@@ -60,11 +161,19 @@ class RoomSerializer {
      * @return Restored RoomData object
      */
     public static RoomData deserializeData(String filename) {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filename))) {
-            RoomData room = (RoomData) ois.readObject();
-            room.compute(); // Restore transient fields
-            return room;
-        } catch (IOException | ClassNotFoundException e) {
+        return deserializeData(filename, new JavaRoomCodec());
+    }
+
+    /**
+     * Method for deserializing an object from a file in the given format.
+     * @param filename File name for reading
+     * @param codec Storage format
+     * @return Restored RoomData object
+     */
+    public static RoomData deserializeData(String filename, RoomCodec codec) {
+        try {
+            return codec.read(filename);
+        } catch (IOException e) {
             e.printStackTrace();
             return null;
         }
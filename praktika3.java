@@ -1,4 +1,11 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 /**
@@ -27,12 +34,21 @@ class RoomData implements Serializable, Displayable {
         this.height = Integer.parseInt(heightBinary, 2);
     }
 
+    public RoomData(int length, int width, int height) {
+        this.length = length;
+        this.width = width;
+        this.height = height;
+    }
+
     public void compute() {
         this.perimeter = 2 * (length + width);
         this.area = length * width;
         this.volume = length * width * height;
     }
 
+    public int getLength() { return length; }
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
     public int getPerimeter() { return perimeter; }
     public int getArea() { return area; }
     public int getVolume() { return volume; }
@@ -62,24 +78,290 @@ class ConcreteRoomFactory implements RoomFactory {
     }
 }
 
+/**
+ * Інтерфейс формату збереження списку кімнат.
+ */
+interface RoomCodec {
+    void write(List<RoomData> data, String filename) throws IOException;
+    List<RoomData> read(String filename) throws IOException;
+}
+
+/**
+ * Стандартна серіалізація Java.
+ */
+class JavaRoomCodec implements RoomCodec {
+    @Override
+    public void write(List<RoomData> data, String filename) throws IOException {
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+            oos.writeObject(data);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RoomData> read(String filename) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+            return (List<RoomData>) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+}
+
+/**
+ * Компактний двійковий формат фіксованої структури.
+ * Заголовок: сигнатура, версія формату, кількість записів;
+ * далі по три int (довжина, ширина, висота) на кімнату. Похідні значення обчислюються при читанні.
+ */
+class BinaryRoomCodec implements RoomCodec {
+    static final int MAGIC = 0x524F4F4D; // "ROOM"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 12;
+    static final int RECORD_SIZE = 12;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    @Override
+    public void write(List<RoomData> data, String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(data.size());
+            for (RoomData room : data) {
+                if (buffer.remaining() < RECORD_SIZE) {
+                    flush(channel, buffer);
+                }
+                buffer.putInt(room.getLength()).putInt(room.getWidth()).putInt(room.getHeight());
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    @Override
+    public List<RoomData> read(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.limit(0);
+            fill(channel, buffer, HEADER_SIZE);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a binary room file: " + filename);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported format version " + version + " in " + filename);
+            }
+            int count = buffer.getInt();
+            if (count < 0 || channel.size() != HEADER_SIZE + (long) count * RECORD_SIZE) {
+                throw new IOException("Corrupted binary room file: " + filename);
+            }
+            List<RoomData> rooms = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                if (buffer.remaining() < RECORD_SIZE) {
+                    fill(channel, buffer, RECORD_SIZE);
+                }
+                RoomData room = new RoomData(buffer.getInt(), buffer.getInt(), buffer.getInt());
+                room.compute();
+                rooms.add(room);
+            }
+            return rooms;
+        }
+    }
+
+    /**
+     * Запис вмісту буфера у канал повністю; буфер очищується для наступної порції
+     */
+    static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Дочитування у буфер щонайменше required байт
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer, int required) throws IOException {
+        buffer.compact();
+        while (buffer.position() < required) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+    }
+}
+
+/**
+ * Файл кімнат із записами фіксованого розміру, відображений у пам'ять.
+ * Відкриття не читає дані, а будь-який запис доступний за індексом напряму,
+ * тому можна працювати з наборами, більшими за heap.
+ * Запис: довжина, ширина, висота, периметр, площа, об'єм (6 int).
+ */
+class MappedRoomStore implements Iterable<RoomData>, Closeable {
+    static final int MAGIC = 0x524D4150; // "RMAP"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 24;
+    private static final int RECORDS_PER_REGION = (1 << 30) / RECORD_SIZE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final long size;
+
+    private MappedRoomStore(FileChannel channel, MappedByteBuffer[] regions, long size) {
+        this.channel = channel;
+        this.regions = regions;
+        this.size = size;
+    }
+
+    /**
+     * Потоковий запис кімнат у файл (список не обов'язково має вміщатися в пам'ять)
+     */
+    public static void write(Iterable<RoomData> rooms, String filename) throws IOException {
+        try (FileChannel out = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * 4096);
+            out.position(HEADER_SIZE);
+            long count = 0;
+            for (RoomData room : rooms) {
+                if (buffer.remaining() < RECORD_SIZE) {
+                    BinaryRoomCodec.flush(out, buffer);
+                }
+                buffer.putInt(room.getLength()).putInt(room.getWidth()).putInt(room.getHeight())
+                      .putInt(room.getPerimeter()).putInt(room.getArea()).putInt(room.getVolume());
+                count++;
+            }
+            BinaryRoomCodec.flush(out, buffer);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(count);
+            buffer.flip();
+            out.write(buffer, 0);
+        }
+    }
+
+    /**
+     * Відкриття файлу за O(1): дані відображаються, але не читаються
+     */
+    public static MappedRoomStore open(String filename) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new EOFException("Unexpected end of file " + filename);
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a mapped room file: " + filename);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported format version " + version + " in " + filename);
+            }
+            long count = header.getLong();
+            if (count < 0 || channel.size() < HEADER_SIZE + count * RECORD_SIZE) {
+                throw new IOException("Corrupted mapped room file: " + filename);
+            }
+            int regionCount = (int) ((count + RECORDS_PER_REGION - 1) / RECORDS_PER_REGION);
+            MappedByteBuffer[] regions = new MappedByteBuffer[regionCount];
+            for (int i = 0; i < regionCount; i++) {
+                long first = (long) i * RECORDS_PER_REGION;
+                long records = Math.min(RECORDS_PER_REGION, count - first);
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * RECORD_SIZE,
+                        records * RECORD_SIZE);
+            }
+            return new MappedRoomStore(channel, regions, count);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int getLength(long index) { return field(index, 0); }
+    public int getWidth(long index) { return field(index, 4); }
+    public int getHeight(long index) { return field(index, 8); }
+    public int getPerimeter(long index) { return field(index, 12); }
+    public int getArea(long index) { return field(index, 16); }
+    public int getVolume(long index) { return field(index, 20); }
+
+    /**
+     * Кімната з індексом index як окремий об'єкт
+     */
+    public RoomData get(long index) {
+        RoomData room = new RoomData(getLength(index), getWidth(index), getHeight(index));
+        room.compute();
+        return room;
+    }
+
+    private int field(long index, int offset) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        MappedByteBuffer region = regions[(int) (index / RECORDS_PER_REGION)];
+        return region.getInt((int) (index % RECORDS_PER_REGION) * RECORD_SIZE + offset);
+    }
+
+    /**
+     * Послідовний обхід без попередньої десеріалізації всього файлу
+     */
+    @Override
+    public Iterator<RoomData> iterator() {
+        return new Iterator<RoomData>() {
+            private long next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public RoomData next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * Відображення звільняється збирачем сміття після закриття каналу
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
+
 /**
  * Клас для серіалізації та десеріалізації.
  */
 class RoomSerializer {
     public static void serializeData(List<RoomData> data, String filename) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
-            oos.writeObject(data);
+        serializeData(data, filename, new JavaRoomCodec());
+    }
+
+    public static void serializeData(List<RoomData> data, String filename, RoomCodec codec) {
+        try {
+            codec.write(data, filename);
             System.out.println("Дані збережені у файл " + filename);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    @SuppressWarnings("unchecked")
     public static List<RoomData> deserializeData(String filename) {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filename))) {
-            return (List<RoomData>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
+        return deserializeData(filename, new JavaRoomCodec());
+    }
+
+    public static List<RoomData> deserializeData(String filename, RoomCodec codec) {
+        try {
+            return codec.read(filename);
+        } catch (IOException e) {
             e.printStackTrace();
             return new ArrayList<>();
         }
@@ -104,6 +386,122 @@ class TextRoomDisplay implements Displayable {
     }
 }
 
+/**
+ * Пакетне виведення списку кімнат: текстом (як TextRoomDisplay), CSV або TSV.
+ * Рядки формуються в одному байтовому буфері з власним перетворенням чисел у текст,
+ * заголовок CSV/TSV виводиться один раз, запис іде великими блоками через канал.
+ */
+class RoomListDisplay implements Displayable, Flushable {
+    /**
+     * Формат виведення
+     */
+    enum Format { TEXT, CSV, TSV }
+
+    private static final int MAX_ROOM_BYTES = 256;
+
+    private final Iterable<RoomData> rooms;
+    private final Format format;
+    private final WritableByteChannel out;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private final byte[] digits = new byte[11];
+    private final byte[] lineSeparator;
+    private final byte[][] labels;
+    private boolean headerWritten;
+
+    /**
+     * Виведення у стандартний потік виводу
+     */
+    public RoomListDisplay(Iterable<RoomData> rooms, Format format) {
+        this(rooms, format, new FileOutputStream(FileDescriptor.out).getChannel());
+    }
+
+    public RoomListDisplay(Iterable<RoomData> rooms, Format format, WritableByteChannel out) {
+        this.rooms = rooms;
+        this.format = format;
+        this.out = out;
+        Charset charset = Charset.defaultCharset();
+        this.lineSeparator = (format == Format.TEXT ? System.lineSeparator() : "\n").getBytes(charset);
+        if (format == Format.TEXT) {
+            this.labels = new byte[][] { "Периметр: ".getBytes(charset), "Площа: ".getBytes(charset), "Об'єм: ".getBytes(charset) };
+        } else {
+            char separator = format == Format.CSV ? ',' : '\t';
+            String header = "Довжина" + separator + "Ширина" + separator + "Висота" + separator
+                    + "Периметр" + separator + "Площа" + separator + "Об'єм";
+            this.labels = new byte[][] { header.getBytes(charset) };
+        }
+    }
+
+    @Override
+    public void display() {
+        try {
+            render();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void render() throws IOException {
+        System.out.flush(); // Не змішувати з тим, що вже надруковано через System.out
+        if (format != Format.TEXT && !headerWritten) {
+            buffer.put(labels[0]).put(lineSeparator);
+            headerWritten = true;
+        }
+        for (RoomData room : rooms) {
+            if (buffer.remaining() < MAX_ROOM_BYTES) {
+                flush();
+            }
+            if (format == Format.TEXT) {
+                writeLine(labels[0], room.getPerimeter());
+                writeLine(labels[1], room.getArea());
+                writeLine(labels[2], room.getVolume());
+            } else {
+                byte separator = (byte) (format == Format.CSV ? ',' : '\t');
+                writeInt(room.getLength());
+                buffer.put(separator);
+                writeInt(room.getWidth());
+                buffer.put(separator);
+                writeInt(room.getHeight());
+                buffer.put(separator);
+                writeInt(room.getPerimeter());
+                buffer.put(separator);
+                writeInt(room.getArea());
+                buffer.put(separator);
+                writeInt(room.getVolume());
+                buffer.put(lineSeparator);
+            }
+        }
+        flush();
+    }
+
+    private void writeLine(byte[] label, int value) {
+        buffer.put(label);
+        writeInt(value);
+        buffer.put(lineSeparator);
+    }
+
+    private void writeInt(int value) {
+        int start = digits.length;
+        boolean negative = value < 0;
+        do {
+            digits[--start] = (byte) ('0' + Math.abs(value % 10));
+            value /= 10;
+        } while (value != 0);
+        if (negative) {
+            digits[--start] = '-';
+        }
+        buffer.put(digits, start, digits.length - start);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+}
+
 /**
  * Головний клас для тестування програми.
  */
@@ -122,10 +520,7 @@ class RoomComputationTest {
         }
 
         // Виведення результатів
-        for (RoomData room : roomList) {
-            Displayable display = new TextRoomDisplay(room);
-            display.display();
-        }
+        new RoomListDisplay(roomList, RoomListDisplay.Format.TEXT).display();
 
         // Серіалізація
         String filename = "roomDataList.ser";
@@ -134,10 +529,7 @@ class RoomComputationTest {
         // Десеріалізація
         List<RoomData> restoredRooms = RoomSerializer.deserializeData(filename);
         System.out.println("Відновлені дані:");
-        for (RoomData room : restoredRooms) {
-            Displayable display = new TextRoomDisplay(room);
-            display.display();
-        }
+        new RoomListDisplay(restoredRooms, RoomListDisplay.Format.TEXT).display();
     }
 }
 
@@ -1,6 +1,17 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.Scanner;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 
 /**
  * Інтерфейс для об'єктів, які можуть виводити результати обчислень.
@@ -26,12 +37,21 @@ abstract class RoomData implements Serializable, Displayable {
         this.height = Integer.parseInt(heightBinary, 2);
     }
 
+    protected RoomData(int length, int width, int height) {
+        this.length = length;
+        this.width = width;
+        this.height = height;
+    }
+
     public void compute() {
         this.perimeter = 2 * (length + width);
         this.area = length * width;
         this.volume = length * width * height;
     }
 
+    public int getLength() { return length; }
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
     public int getPerimeter() { return perimeter; }
     public int getArea() { return area; }
     public int getVolume() { return volume; }
@@ -48,6 +68,10 @@ class TableRoomData extends RoomData {
         super(lengthBinary, widthBinary, heightBinary);
     }
 
+    public TableRoomData(int length, int width, int height) {
+        super(length, width, height);
+    }
+
     @Override
     public void display() {
         System.out.printf("%-10s %-10s %-10s %-10s %-10s %-10s%n", "Довжина", "Ширина", "Висота", "Периметр", "Площа", "Об'єм");
@@ -60,6 +84,13 @@ class TableRoomData extends RoomData {
  */
 interface RoomFactory {
     RoomData createRoom(String lengthBinary, String widthBinary, String heightBinary);
+
+    /**
+     * Створення кімнати з уже розібраних розмірів
+     */
+    default RoomData createRoom(int length, int width, int height) {
+        return createRoom(Integer.toBinaryString(length), Integer.toBinaryString(width), Integer.toBinaryString(height));
+    }
 }
 
 /**
@@ -70,13 +101,1210 @@ class TableRoomFactory implements RoomFactory {
     public RoomData createRoom(String lengthBinary, String widthBinary, String heightBinary) {
         return new TableRoomData(lengthBinary, widthBinary, heightBinary);
     }
+
+    @Override
+    public RoomData createRoom(int length, int width, int height) {
+        return new TableRoomData(length, width, height);
+    }
+}
+
+/**
+ * Пакет кімнат у вигляді окремих масивів для кожного параметра (structure of arrays).
+ * Обчислення виконуються щільними циклами по масивах, які JIT може векторизувати,
+ * а для великих пакетів — паралельно по фрагментах.
+ * Площа та об'єм рахуються в long, тому великі розміри не переповнюються.
+ */
+class RoomBatch {
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    private int[] length;
+    private int[] width;
+    private int[] height;
+    private long[] perimeter = new long[0];
+    private long[] area = new long[0];
+    private long[] volume = new long[0];
+    private int size;
+
+    public RoomBatch() {
+        this(16);
+    }
+
+    public RoomBatch(int capacity) {
+        length = new int[capacity];
+        width = new int[capacity];
+        height = new int[capacity];
+    }
+
+    /**
+     * Пакет з параметрами кімнат зі списку
+     */
+    public static RoomBatch of(List<? extends RoomData> rooms) {
+        RoomBatch batch = new RoomBatch(rooms.size());
+        for (RoomData room : rooms) {
+            batch.add(room.getLength(), room.getWidth(), room.getHeight());
+        }
+        return batch;
+    }
+
+    public void add(int roomLength, int roomWidth, int roomHeight) {
+        if (size == length.length) {
+            int capacity = Math.max(16, size * 2);
+            length = Arrays.copyOf(length, capacity);
+            width = Arrays.copyOf(width, capacity);
+            height = Arrays.copyOf(height, capacity);
+        }
+        length[size] = roomLength;
+        width[size] = roomWidth;
+        height[size] = roomHeight;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Обчислення периметра, площі та об'єму для всіх кімнат
+     */
+    public void compute() {
+        prepareResults();
+        if (size < PARALLEL_THRESHOLD) {
+            computeRange(0, size);
+        } else {
+            IntStream.range(0, (size + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel()
+                    .forEach(chunk -> computeRange(chunk * CHUNK_SIZE, Math.min(size, (chunk + 1) * CHUNK_SIZE)));
+        }
+    }
+
+    private void prepareResults() {
+        if (perimeter.length < size) {
+            perimeter = new long[length.length];
+            area = new long[length.length];
+            volume = new long[length.length];
+        }
+    }
+
+    private void computeRange(int from, int to) {
+        int[] l = length, w = width, h = height;
+        long[] p = perimeter, a = area, v = volume;
+        for (int i = from; i < to; i++) {
+            long li = l[i], wi = w[i];
+            p[i] = 2 * (li + wi);
+            a[i] = li * wi;
+            v[i] = li * wi * h[i];
+        }
+    }
+
+    public int getLength(int index) { return length[checkIndex(index)]; }
+    public int getWidth(int index) { return width[checkIndex(index)]; }
+    public int getHeight(int index) { return height[checkIndex(index)]; }
+    public long getPerimeter(int index) { return perimeter[checkIndex(index)]; }
+    public long getArea(int index) { return area[checkIndex(index)]; }
+    public long getVolume(int index) { return volume[checkIndex(index)]; }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return index;
+    }
+
+    /**
+     * Перетворення пакета на окремі об'єкти кімнат через фабрику
+     */
+    public List<RoomData> toRooms(RoomFactory factory) {
+        List<RoomData> rooms = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            RoomData room = factory.createRoom(length[i], width[i], height[i]);
+            room.compute();
+            rooms.add(room);
+        }
+        return rooms;
+    }
+}
+
+/**
+ * Гістограма невід'ємних long значень з логарифмічно-лінійними кошиками (у стилі HdrHistogram).
+ * Кожен степінь двійки ділиться на 2^(significantBits - 1) кошиків, тому відносна похибка
+ * перцентилів не перевищує 2^(1 - significantBits). Запис не виділяє пам'ять,
+ * гістограми з однаковою точністю можна об'єднувати. Від'ємні значення записуються як 0.
+ */
+class LongHistogram {
+    private final int significantBits;
+    private final int halfBucket;
+    private final long[] counts;
+    private long totalCount;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    public LongHistogram() {
+        this(8);
+    }
+
+    public LongHistogram(int significantBits) {
+        if (significantBits < 2 || significantBits > 16) {
+            throw new IllegalArgumentException("significantBits must be in [2, 16]: " + significantBits);
+        }
+        this.significantBits = significantBits;
+        this.halfBucket = 1 << (significantBits - 1);
+        this.counts = new long[(64 - significantBits + 2) * halfBucket];
+    }
+
+    public void record(long value) {
+        record(value, 1);
+    }
+
+    public void record(long value, long count) {
+        value = Math.max(0, value);
+        counts[indexOf(value)] += count;
+        totalCount += count;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Додавання даних іншої гістограми з такою ж точністю
+     */
+    public LongHistogram merge(LongHistogram other) {
+        if (other.significantBits != significantBits) {
+            throw new IllegalArgumentException("Histogram precision mismatch");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    public long getCount() { return totalCount; }
+    public long getMin() { return totalCount == 0 ? 0 : min; }
+    public long getMax() { return totalCount == 0 ? 0 : max; }
+
+    /**
+     * Значення, не менше за яке є percentile відсотків записаних значень
+     */
+    public long valueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double fraction = Math.min(100.0, Math.max(0.0, percentile)) / 100.0;
+        long target = Math.max(1, (long) Math.ceil(fraction * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.max(min, Math.min(max, highestEquivalent(i)));
+            }
+        }
+        return max;
+    }
+
+    private int indexOf(long value) {
+        int bucket = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - significantBits);
+        return bucket * halfBucket + (int) (value >>> bucket);
+    }
+
+    private long highestEquivalent(int index) {
+        if (index < 2 * halfBucket) {
+            return index;
+        }
+        int bucket = index / halfBucket - 1;
+        long subBucket = index - (long) bucket * halfBucket;
+        return ((subBucket + 1) << bucket) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, min=%d, p50=%d, p90=%d, p99=%d, max=%d", getCount(), getMin(),
+                valueAtPercentile(50), valueAtPercentile(90), valueAtPercentile(99), getMax());
+    }
+}
+
+/**
+ * Зведені показники по множині кімнат: загальні площа та об'єм, розподіл площі та об'єму,
+ * K найбільших за об'ємом кімнат і групи за висотою. Часткові результати окремих фрагментів,
+ * потоків чи файлів об'єднуються через merge, тому весь розрахунок — один паралельний прохід.
+ * Запис кімнати не виділяє пам'яті: групи за висотою зберігаються в примітивних масивах
+ * з відкритою адресацією, які лише зрідка розширюються.
+ */
+class RoomAnalytics {
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    private final int topK;
+    private final int heightBucket;
+    private long rooms;
+    private long totalArea;
+    private long totalVolume;
+    private final LongHistogram areaHistogram = new LongHistogram();
+    private final LongHistogram volumeHistogram = new LongHistogram();
+    // Групи за висотою: нижня межа -> підсумки; порожня комірка має groupRooms == 0
+    private int[] groupKeys = new int[16];
+    private long[] groupRooms = new long[16];
+    private long[] groupArea = new long[16];
+    private long[] groupVolume = new long[16];
+    private int groupCount;
+    // Мінімальна купа за об'ємом: у корені найменша з K найбільших кімнат
+    private final long[] topVolume;
+    private final int[] topLength;
+    private final int[] topWidth;
+    private final int[] topHeight;
+    private int topSize;
+
+    /**
+     * Підсумки групи кімнат з висотою в [from, from + heightBucket)
+     */
+    static final class HeightGroup {
+        private long rooms;
+        private long totalArea;
+        private long totalVolume;
+
+        public long getRooms() { return rooms; }
+        public long getTotalArea() { return totalArea; }
+        public long getTotalVolume() { return totalVolume; }
+
+        @Override
+        public String toString() {
+            return "кімнат=" + rooms + ", площа=" + totalArea + ", об'єм=" + totalVolume;
+        }
+    }
+
+    public RoomAnalytics() {
+        this(10, 1);
+    }
+
+    public RoomAnalytics(int topK, int heightBucket) {
+        if (topK < 0 || heightBucket <= 0) {
+            throw new IllegalArgumentException("topK=" + topK + ", heightBucket=" + heightBucket);
+        }
+        this.topK = topK;
+        this.heightBucket = heightBucket;
+        this.topVolume = new long[topK];
+        this.topLength = new int[topK];
+        this.topWidth = new int[topK];
+        this.topHeight = new int[topK];
+    }
+
+    /**
+     * Аналітика по списку вже обчислених кімнат
+     */
+    public static RoomAnalytics of(List<? extends RoomData> rooms, int topK, int heightBucket) {
+        return IntStream.range(0, (rooms.size() + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel()
+                .mapToObj(chunk -> {
+                    RoomAnalytics partial = new RoomAnalytics(topK, heightBucket);
+                    for (RoomData room : rooms.subList(chunk * CHUNK_SIZE, Math.min(rooms.size(), (chunk + 1) * CHUNK_SIZE))) {
+                        // int-поля getArea/getVolume переповнюються, тому добутки рахуються в long
+                        long area = (long) room.getLength() * room.getWidth();
+                        partial.add(room.getLength(), room.getWidth(), room.getHeight(), area, area * room.getHeight());
+                    }
+                    return partial;
+                })
+                .reduce(RoomAnalytics::merge)
+                .orElseGet(() -> new RoomAnalytics(topK, heightBucket));
+    }
+
+    /**
+     * Аналітика по обчисленому пакету кімнат
+     */
+    public static RoomAnalytics of(RoomBatch batch, int topK, int heightBucket) {
+        return IntStream.range(0, (batch.size() + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel()
+                .mapToObj(chunk -> new RoomAnalytics(topK, heightBucket)
+                        .addAll(batch, chunk * CHUNK_SIZE, Math.min(batch.size(), (chunk + 1) * CHUNK_SIZE)))
+                .reduce(RoomAnalytics::merge)
+                .orElseGet(() -> new RoomAnalytics(topK, heightBucket));
+    }
+
+    public RoomAnalytics addAll(RoomBatch batch) {
+        return addAll(batch, 0, batch.size());
+    }
+
+    private RoomAnalytics addAll(RoomBatch batch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            add(batch.getLength(i), batch.getWidth(i), batch.getHeight(i), batch.getArea(i), batch.getVolume(i));
+        }
+        return this;
+    }
+
+    public void add(int length, int width, int height, long area, long volume) {
+        rooms++;
+        totalArea += area;
+        totalVolume += volume;
+        areaHistogram.record(area);
+        volumeHistogram.record(volume);
+        addToGroup(Math.floorDiv(height, heightBucket) * heightBucket, 1, area, volume);
+        offerTop(length, width, height, volume);
+    }
+
+    private void addToGroup(int from, long rooms, long area, long volume) {
+        int mask = groupKeys.length - 1;
+        int slot = groupSlot(from, mask);
+        while (groupRooms[slot] != 0 && groupKeys[slot] != from) {
+            slot = (slot + 1) & mask;
+        }
+        if (groupRooms[slot] == 0) {
+            groupKeys[slot] = from;
+            groupCount++;
+        }
+        groupRooms[slot] += rooms;
+        groupArea[slot] += area;
+        groupVolume[slot] += volume;
+        if (groupCount * 2 > groupKeys.length) {
+            resizeGroups();
+        }
+    }
+
+    private void resizeGroups() {
+        int[] keys = groupKeys;
+        long[] rooms = groupRooms, area = groupArea, volume = groupVolume;
+        int capacity = keys.length * 2;
+        groupKeys = new int[capacity];
+        groupRooms = new long[capacity];
+        groupArea = new long[capacity];
+        groupVolume = new long[capacity];
+        groupCount = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (rooms[i] != 0) {
+                addToGroup(keys[i], rooms[i], area[i], volume[i]);
+            }
+        }
+    }
+
+    private static int groupSlot(int key, int mask) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Об'єднання з іншим частковим результатом з тими ж параметрами
+     */
+    public RoomAnalytics merge(RoomAnalytics other) {
+        if (other.topK != topK || other.heightBucket != heightBucket) {
+            throw new IllegalArgumentException("Analytics parameters mismatch");
+        }
+        rooms += other.rooms;
+        totalArea += other.totalArea;
+        totalVolume += other.totalVolume;
+        areaHistogram.merge(other.areaHistogram);
+        volumeHistogram.merge(other.volumeHistogram);
+        for (int i = 0; i < other.groupKeys.length; i++) {
+            if (other.groupRooms[i] != 0) {
+                addToGroup(other.groupKeys[i], other.groupRooms[i], other.groupArea[i], other.groupVolume[i]);
+            }
+        }
+        for (int i = 0; i < other.topSize; i++) {
+            offerTop(other.topLength[i], other.topWidth[i], other.topHeight[i], other.topVolume[i]);
+        }
+        return this;
+    }
+
+    private void offerTop(int length, int width, int height, long volume) {
+        if (topSize < topK) {
+            int i = topSize++;
+            while (i > 0 && topVolume[(i - 1) / 2] > volume) {
+                moveTop((i - 1) / 2, i);
+                i = (i - 1) / 2;
+            }
+            setTop(i, length, width, height, volume);
+        } else if (topK > 0 && volume > topVolume[0]) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= topSize) {
+                    break;
+                }
+                if (child + 1 < topSize && topVolume[child + 1] < topVolume[child]) {
+                    child++;
+                }
+                if (topVolume[child] >= volume) {
+                    break;
+                }
+                moveTop(child, i);
+                i = child;
+            }
+            setTop(i, length, width, height, volume);
+        }
+    }
+
+    private void moveTop(int from, int to) {
+        setTop(to, topLength[from], topWidth[from], topHeight[from], topVolume[from]);
+    }
+
+    private void setTop(int index, int length, int width, int height, long volume) {
+        topLength[index] = length;
+        topWidth[index] = width;
+        topHeight[index] = height;
+        topVolume[index] = volume;
+    }
+
+    public long getRooms() { return rooms; }
+    public long getTotalArea() { return totalArea; }
+    public long getTotalVolume() { return totalVolume; }
+    public LongHistogram getAreaHistogram() { return areaHistogram; }
+    public LongHistogram getVolumeHistogram() { return volumeHistogram; }
+
+    public long areaPercentile(double percentile) {
+        return areaHistogram.valueAtPercentile(percentile);
+    }
+
+    public long volumePercentile(double percentile) {
+        return volumeHistogram.valueAtPercentile(percentile);
+    }
+
+    /**
+     * Групи за висотою: нижня межа групи -> підсумки
+     */
+    public SortedMap<Integer, HeightGroup> getHeightGroups() {
+        SortedMap<Integer, HeightGroup> groups = new TreeMap<>();
+        for (int i = 0; i < groupKeys.length; i++) {
+            if (groupRooms[i] != 0) {
+                HeightGroup group = new HeightGroup();
+                group.rooms = groupRooms[i];
+                group.totalArea = groupArea[i];
+                group.totalVolume = groupVolume[i];
+                groups.put(groupKeys[i], group);
+            }
+        }
+        return Collections.unmodifiableSortedMap(groups);
+    }
+
+    /**
+     * Найбільші за об'ємом кімнати у порядку спадання
+     */
+    public RoomBatch largestRooms() {
+        Integer[] order = new Integer[topSize];
+        for (int i = 0; i < topSize; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(topVolume[b], topVolume[a]));
+        RoomBatch batch = new RoomBatch(Math.max(1, topSize));
+        for (int i : order) {
+            batch.add(topLength[i], topWidth[i], topHeight[i]);
+        }
+        batch.compute();
+        return batch;
+    }
+
+    public void display() {
+        System.out.println("Кімнат: " + rooms);
+        System.out.println("Загальна площа: " + totalArea);
+        System.out.println("Загальний об'єм: " + totalVolume);
+        System.out.println("Площа: " + areaHistogram);
+        System.out.println("Об'єм: " + volumeHistogram);
+        System.out.println("Групи за висотою:");
+        getHeightGroups().forEach((from, group) -> System.out.println("  " + from + ".." + (from + heightBucket - 1) + ": " + group));
+        System.out.println("Найбільші кімнати:");
+        try {
+            new RoomRenderer(RoomRenderer.Format.TABLE).render(largestRooms());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
+
+/**
+ * Пакетне виведення кімнат. Рядки формуються в одному байтовому буфері з власним
+ * перетворенням чисел у текст (без Formatter), заголовок виводиться один раз,
+ * а запис відбувається великими блоками через канал.
+ */
+class RoomRenderer implements Flushable {
+    /**
+     * Формат виведення
+     */
+    enum Format { TABLE, CSV, TSV }
+
+    private static final String[] HEADERS = { "Довжина", "Ширина", "Висота", "Периметр", "Площа", "Об'єм" };
+    private static final int COLUMN_WIDTH = 10;
+    private static final int MAX_ROW_BYTES = 256;
+
+    private final Format format;
+    private final WritableByteChannel out;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private final byte[] digits = new byte[20];
+    private final byte[] lineSeparator;
+    private boolean headerWritten;
+
+    /**
+     * Виведення у стандартний потік виводу
+     */
+    public RoomRenderer(Format format) {
+        this(format, new FileOutputStream(FileDescriptor.out).getChannel());
+    }
+
+    public RoomRenderer(Format format, WritableByteChannel out) {
+        this.format = format;
+        this.out = out;
+        this.lineSeparator = (format == Format.TABLE ? System.lineSeparator() : "\n").getBytes(Charset.defaultCharset());
+    }
+
+    public void render(List<? extends RoomData> rooms) throws IOException {
+        writeHeader();
+        for (RoomData room : rooms) {
+            ensureRoom();
+            writeRow(room.getLength(), room.getWidth(), room.getHeight(), room.getPerimeter(), room.getArea(), room.getVolume());
+        }
+        flush();
+    }
+
+    public void render(RoomBatch batch) throws IOException {
+        writeHeader();
+        for (int i = 0; i < batch.size(); i++) {
+            ensureRoom();
+            writeRow(batch.getLength(i), batch.getWidth(i), batch.getHeight(i),
+                    batch.getPerimeter(i), batch.getArea(i), batch.getVolume(i));
+        }
+        flush();
+    }
+
+    private void writeHeader() throws IOException {
+        if (headerWritten) {
+            return;
+        }
+        headerWritten = true;
+        StringBuilder header = new StringBuilder();
+        for (int i = 0; i < HEADERS.length; i++) {
+            header.append(HEADERS[i]);
+            if (format == Format.TABLE) {
+                for (int pad = HEADERS[i].length(); pad < COLUMN_WIDTH; pad++) {
+                    header.append(' ');
+                }
+            }
+            if (i < HEADERS.length - 1) {
+                header.append(separator());
+            }
+        }
+        System.out.flush(); // Не змішувати з тим, що вже надруковано через System.out
+        buffer.put(header.toString().getBytes(Charset.defaultCharset())).put(lineSeparator);
+    }
+
+    private void writeRow(long length, long width, long height, long perimeter, long area, long volume) {
+        writeField(length, false);
+        writeField(width, false);
+        writeField(height, false);
+        writeField(perimeter, false);
+        writeField(area, false);
+        writeField(volume, true);
+    }
+
+    private void writeField(long value, boolean last) {
+        int start = digits.length;
+        boolean negative = value < 0;
+        do {
+            digits[--start] = (byte) ('0' + Math.abs(value % 10));
+            value /= 10;
+        } while (value != 0);
+        if (negative) {
+            digits[--start] = '-';
+        }
+        int written = digits.length - start;
+        buffer.put(digits, start, written);
+        if (format == Format.TABLE) {
+            for (; written < COLUMN_WIDTH; written++) {
+                buffer.put((byte) ' ');
+            }
+        }
+        if (last) {
+            buffer.put(lineSeparator);
+        } else {
+            buffer.put((byte) separator());
+        }
+    }
+
+    private char separator() {
+        switch (format) {
+            case CSV: return ',';
+            case TSV: return '\t';
+            default: return ' ';
+        }
+    }
+
+    private void ensureRoom() throws IOException {
+        if (buffer.remaining() < MAX_ROW_BYTES) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+}
+
+/**
+ * Помилка формату вхідних даних із зазначенням місця (рядок і позиція в рядку, з 1).
+ */
+class RoomFormatException extends NumberFormatException {
+    private static final long serialVersionUID = 1L;
+
+    private final long line;
+    private final long column;
+
+    public RoomFormatException(long line, long column, String message) {
+        super("Рядок " + line + ", позиція " + column + ": " + message);
+        this.line = line;
+        this.column = column;
+    }
+
+    public long getLine() { return line; }
+    public long getColumn() { return column; }
+}
+
+/**
+ * Потоковий розбір трійок двійкових чисел "довжина ширина висота", по одній на рядок.
+ * Символи обробляються по одному, без проміжних рядків і масивів, тому розбір не виділяє
+ * пам'яті; вхід можна подавати частинами (рядок може продовжуватися в наступному фрагменті).
+ * Розібрані розміри передаються одразу у RoomSink, наприклад RoomBatch::add.
+ */
+class BinaryRoomParser {
+    /**
+     * Отримувач розібраних розмірів кімнати
+     */
+    interface RoomSink {
+        void accept(int length, int width, int height);
+    }
+
+    /**
+     * Обробник помилок формату; рядок з помилкою пропускається
+     */
+    interface ErrorHandler {
+        void onError(long line, long column, String message);
+    }
+
+    /** Обробник, що перериває розбір винятком RoomFormatException */
+    static final ErrorHandler FAIL = (line, column, message) -> {
+        throw new RoomFormatException(line, column, message);
+    };
+
+    private final RoomSink sink;
+    private final ErrorHandler errors;
+    private int length;
+    private int width;
+    private int height;
+    private int tokens;
+    private int value;
+    private boolean inToken;
+    private boolean skipLine;
+    private long line = 1;
+    private long column;
+    private long tokenColumn;
+    private long rooms;
+    private long errorCount;
+
+    public BinaryRoomParser(RoomSink sink) {
+        this(sink, FAIL);
+    }
+
+    public BinaryRoomParser(RoomSink sink, ErrorHandler errors) {
+        this.sink = sink;
+        this.errors = errors;
+    }
+
+    /**
+     * Розбір фрагмента тексту
+     */
+    public BinaryRoomParser feed(CharSequence text) {
+        for (int i = 0, n = text.length(); i < n; i++) {
+            accept(text.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Розбір фрагмента байтів у кодуванні ASCII/UTF-8 (від position до limit)
+     */
+    public BinaryRoomParser feed(ByteBuffer buffer) {
+        for (int i = buffer.position(), n = buffer.limit(); i < n; i++) {
+            accept(buffer.get(i));
+        }
+        buffer.position(buffer.limit());
+        return this;
+    }
+
+    /**
+     * Завершення вводу: обробка останнього рядка без символу нового рядка
+     */
+    public BinaryRoomParser finish() {
+        endLine();
+        return this;
+    }
+
+    /**
+     * Відкидання решти поточного рядка, наприклад після винятку від обробника помилок,
+     * що перервав розбір посеред рядка; наступний фрагмент розбирається як новий рядок
+     */
+    public BinaryRoomParser discardLine() {
+        if (column > 0) {
+            tokens = 0;
+            inToken = false;
+            skipLine = false;
+            line++;
+            column = 0;
+        }
+        return this;
+    }
+
+    /**
+     * Кількість успішно розібраних кімнат
+     */
+    public long rooms() {
+        return rooms;
+    }
+
+    public long errors() {
+        return errorCount;
+    }
+
+    private void accept(int c) {
+        if (c == '\n') {
+            try {
+                endLine();
+            } finally {
+                line++;
+                column = 0;
+            }
+            return;
+        }
+        column++;
+        if (skipLine) {
+            return;
+        }
+        if (c == '0' || c == '1') {
+            int bit = c - '0';
+            if (!inToken) {
+                inToken = true;
+                value = 0;
+                tokenColumn = column;
+            }
+            if (value > (Integer.MAX_VALUE - bit) >> 1) {
+                error(tokenColumn, "число перевищує " + Integer.MAX_VALUE);
+                return;
+            }
+            value = (value << 1) | bit;
+        } else if (c == ' ' || c == '\t' || c == '\r') {
+            if (inToken) {
+                endToken();
+            }
+        } else {
+            error(column, "неочікуваний символ '" + (char) c + "'");
+        }
+    }
+
+    private void endToken() {
+        inToken = false;
+        switch (tokens++) {
+            case 0: length = value; break;
+            case 1: width = value; break;
+            case 2: height = value; break;
+            default: error(tokenColumn, "зайве значення, очікується 3 числа");
+        }
+    }
+
+    private void endLine() {
+        try {
+            if (!skipLine) {
+                if (inToken) {
+                    endToken();
+                }
+                if (!skipLine) {
+                    if (tokens == 3) {
+                        rooms++;
+                        sink.accept(length, width, height);
+                    } else if (tokens > 0) {
+                        error(column, "очікується 3 числа, знайдено " + tokens);
+                    }
+                }
+            }
+        } finally {
+            tokens = 0;
+            inToken = false;
+            skipLine = false;
+        }
+    }
+
+    private void error(long errorColumn, String message) {
+        skipLine = true;
+        inToken = false;
+        errorCount++;
+        errors.onError(line, errorColumn, message);
+    }
+}
+
+/**
+ * Отримувач оброблених пакетів кімнат (останній етап конвеєра імпорту).
+ * Пакети надходять в порядку їх розташування у вхідному файлі з одного потоку.
+ * finish викликається лише після успішного імпорту, close - завжди.
+ */
+interface RoomBatchSink extends Closeable {
+    void accept(RoomBatch batch) throws IOException;
+
+    default void finish() throws IOException {
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+}
+
+/**
+ * Виведення кімнат таблицею, CSV або TSV напряму з пакета, без створення об'єктів кімнат.
+ */
+class TableRoomSink implements RoomBatchSink {
+    private final RoomRenderer renderer;
+
+    public TableRoomSink(RoomRenderer.Format format) {
+        this.renderer = new RoomRenderer(format);
+    }
+
+    @Override
+    public void accept(RoomBatch batch) throws IOException {
+        renderer.render(batch);
+    }
+}
+
+/**
+ * Підсумкові показники по всіх кімнатах.
+ */
+class SummaryRoomSink implements RoomBatchSink {
+    private final RoomAnalytics analytics = new RoomAnalytics();
+
+    @Override
+    public void accept(RoomBatch batch) {
+        analytics.merge(RoomAnalytics.of(batch, 10, 1));
+    }
+
+    @Override
+    public void finish() {
+        analytics.display();
+    }
+}
+
+/**
+ * Запис розмірів кімнат у двійковий файл: заголовок (сигнатура "ROOM", версія 1, кількість),
+ * далі по три int на кімнату.
+ */
+class BinaryRoomSink implements RoomBatchSink {
+    private static final int MAGIC = 0x524F4F4D;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(12 * 8192);
+    private long rooms;
+
+    public BinaryRoomSink(String filename) throws IOException {
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(HEADER_SIZE);
+    }
+
+    @Override
+    public void accept(RoomBatch batch) throws IOException {
+        for (int i = 0; i < batch.size(); i++) {
+            if (buffer.remaining() < 12) {
+                flush();
+            }
+            buffer.putInt(batch.getLength(i)).putInt(batch.getWidth(i)).putInt(batch.getHeight(i));
+        }
+        rooms += batch.size();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        flush();
+        if (rooms > Integer.MAX_VALUE) {
+            throw new IOException("Too many rooms for the binary format: " + rooms);
+        }
+        buffer.putInt(MAGIC).putInt(VERSION).putInt((int) rooms);
+        buffer.flip();
+        channel.write(buffer, 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
+
+/**
+ * Конвеєр масового імпорту кімнат:
+ * читання фрагментами через NIO -> паралельний розбір і обчислення -> отримувач.
+ * Між етапами стоять обмежені черги, а потоки розбору не випереджають отримувача більш ніж
+ * на queueCapacity фрагментів, тому використання пам'яті не залежить від розміру файлу.
+ * Помилка будь-якого етапу зупиняє весь конвеєр.
+ */
+class RoomImportPipeline {
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    /**
+     * Фрагмент вхідних даних, що закінчується на межі рядка
+     */
+    private static final class Chunk {
+        final long index;
+        final long offset;
+        final ByteBuffer data;
+
+        Chunk(long index, long offset, ByteBuffer data) {
+            this.index = index;
+            this.offset = offset;
+            this.data = data;
+        }
+    }
+
+    private static final class ParsedChunk {
+        final long index;
+        final RoomBatch batch;
+
+        ParsedChunk(long index, RoomBatch batch) {
+            this.index = index;
+            this.batch = batch;
+        }
+    }
+
+    private static final Chunk END_OF_INPUT = new Chunk(-1, -1, null);
+    private static final ParsedChunk END_OF_BATCHES = new ParsedChunk(-1, null);
+
+    private final int chunkSize;
+    private final int workers;
+    private final int queueCapacity;
+    private final AtomicLong errors = new AtomicLong();
+    private final Object progress = new Object();
+    private long drainedIndex;
+    private volatile Throwable failure;
+
+    public RoomImportPipeline() {
+        this(1 << 22, Runtime.getRuntime().availableProcessors(), 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param chunkSize     розмір фрагмента читання в байтах
+     * @param workers       кількість потоків розбору
+     * @param queueCapacity місткість черг між етапами
+     */
+    public RoomImportPipeline(int chunkSize, int workers, int queueCapacity) {
+        this.chunkSize = chunkSize;
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Імпорт усіх кімнат з каналу; отримувач закривається після завершення, зокрема при помилці
+     * @return кількість імпортованих кімнат
+     */
+    public long run(ReadableByteChannel input, RoomBatchSink sink) throws IOException, InterruptedException {
+        BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<ParsedChunk> batches = new ArrayBlockingQueue<>(queueCapacity);
+        failure = null;
+        errors.set(0);
+        synchronized (progress) {
+            drainedIndex = 0;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(workers + 1);
+        Future<Long> sinkResult = pool.submit(() -> drain(batches, sink));
+        for (int i = 0; i < workers; i++) {
+            pool.execute(() -> parse(chunks, batches));
+        }
+        try {
+            read(input, chunks);
+            for (int i = 0; i < workers; i++) {
+                put(chunks, END_OF_INPUT);
+            }
+            return sinkResult.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Room import failed", cause);
+        } finally {
+            pool.shutdownNow();
+            try {
+                sink.close();
+            } finally {
+                if (failure != null && !(failure instanceof InterruptedException)) {
+                    throw new IOException("Room import failed", failure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Кількість рядків, пропущених через помилки формату
+     */
+    public long errors() {
+        return errors.get();
+    }
+
+    private void read(ReadableByteChannel input, BlockingQueue<Chunk> chunks) throws IOException, InterruptedException {
+        ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+        long index = 0;
+        long offset = 0;
+        while (true) {
+            boolean eof = input.read(buffer) < 0;
+            if (!eof && buffer.hasRemaining()) {
+                continue;
+            }
+            int end = buffer.position();
+            if (!eof) {
+                while (end > 0 && buffer.get(end - 1) != '\n') {
+                    end--;
+                }
+                if (end == 0) {
+                    // Рядок довший за фрагмент: збільшуємо буфер
+                    ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    buffer = larger.put(buffer);
+                    continue;
+                }
+            }
+            ByteBuffer next = ByteBuffer.allocate(Math.max(chunkSize, buffer.position() - end));
+            buffer.flip();
+            ByteBuffer data = buffer.duplicate();
+            data.limit(end);
+            buffer.position(end);
+            next.put(buffer);
+            if (end > 0) {
+                put(chunks, new Chunk(index++, offset, data));
+                offset += end;
+            }
+            if (eof) {
+                return;
+            }
+            buffer = next;
+        }
+    }
+
+    private void parse(BlockingQueue<Chunk> chunks, BlockingQueue<ParsedChunk> batches) {
+        try {
+            while (true) {
+                Chunk chunk = chunks.take();
+                if (chunk == END_OF_INPUT) {
+                    put(batches, END_OF_BATCHES);
+                    return;
+                }
+                RoomBatch batch = new RoomBatch(Math.max(16, chunk.data.remaining() / 8));
+                new BinaryRoomParser(batch::add, (line, column, message) -> report(chunk, line, column, message))
+                        .feed(chunk.data)
+                        .finish();
+                batch.compute();
+                awaitTurn(chunk.index);
+                put(batches, new ParsedChunk(chunk.index, batch));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Очікування, доки фрагмент опиниться в межах queueCapacity від наступного очікуваного
+     * отримувачем; фрагмент, якого чекає отримувач, проходить завжди, тож буфер упорядкування
+     * в drain не перевищує queueCapacity пакетів
+     */
+    private void awaitTurn(long index) throws InterruptedException {
+        synchronized (progress) {
+            while (index - drainedIndex >= queueCapacity) {
+                if (failure != null) {
+                    throw new InterruptedException("Pipeline stopped");
+                }
+                progress.wait(100);
+            }
+        }
+    }
+
+    /**
+     * Передача пакетів отримувачу в порядку фрагментів.
+     * Помилка отримувача (запису чи відображення) зупиняє решту етапів.
+     */
+    private long drain(BlockingQueue<ParsedChunk> batches, RoomBatchSink sink) throws IOException, InterruptedException {
+        try {
+            return drainInOrder(batches, sink);
+        } catch (Throwable e) {
+            if (failure == null) {
+                failure = e;
+            }
+            throw e;
+        }
+    }
+
+    private long drainInOrder(BlockingQueue<ParsedChunk> batches, RoomBatchSink sink)
+            throws IOException, InterruptedException {
+        Map<Long, RoomBatch> waiting = new HashMap<>();
+        long nextIndex = 0;
+        long rooms = 0;
+        int finishedWorkers = 0;
+        while (finishedWorkers < workers) {
+            ParsedChunk parsed = batches.poll(100, TimeUnit.MILLISECONDS);
+            if (failure != null) {
+                throw new IOException("Room import failed", failure);
+            }
+            if (parsed == null) {
+                continue;
+            }
+            if (parsed == END_OF_BATCHES) {
+                finishedWorkers++;
+                continue;
+            }
+            waiting.put(parsed.index, parsed.batch);
+            RoomBatch batch;
+            while ((batch = waiting.remove(nextIndex)) != null) {
+                sink.accept(batch);
+                rooms += batch.size();
+                nextIndex++;
+                synchronized (progress) {
+                    drainedIndex = nextIndex;
+                    progress.notifyAll();
+                }
+            }
+        }
+        sink.finish();
+        return rooms;
+    }
+
+    private void report(Chunk chunk, long line, long column, String message) {
+        if (errors.incrementAndGet() <= MAX_REPORTED_ERRORS) {
+            System.err.println("Фрагмент з байта " + chunk.offset + ", рядок " + line + ", позиція " + column + ": " + message);
+        }
+    }
+
+    /**
+     * Додавання в чергу з перевіркою, чи не зупинився конвеєр через помилку
+     */
+    private <T> void put(BlockingQueue<T> queue, T item) throws InterruptedException {
+        while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+            if (failure != null) {
+                throw new InterruptedException("Pipeline stopped");
+            }
+        }
+    }
 }
 
 /**
  * Головний клас для тестування програми з діалоговим інтерфейсом.
  */
 class RoomComputationTest {
+    /**
+     * Без аргументів — діалоговий режим.
+     * Масовий імпорт: RoomComputationTest <файл|-> [table|csv|tsv|summary|binary <вихідний файл>]
+     */
     public static void main(String[] args) {
+        if (args.length > 0) {
+            bulkImport(args);
+            return;
+        }
         Scanner scanner = new Scanner(System.in);
         RoomFactory factory = new TableRoomFactory();
         List<RoomData> roomList = new ArrayList<>();
@@ -85,17 +1313,68 @@ class RoomComputationTest {
         int count = scanner.nextInt();
         scanner.nextLine();
 
-        for (int i = 0; i < count; i++) {
-            System.out.println("Введіть параметри кімнати у двійковій системі (довжина ширина висота через пробіл):");
-            String[] input = scanner.nextLine().split(" ");
-            RoomData room = factory.createRoom(input[0], input[1], input[2]);
+        BinaryRoomParser parser = new BinaryRoomParser((length, width, height) -> {
+            RoomData room = factory.createRoom(length, width, height);
             room.compute();
             roomList.add(room);
+        });
+        while (roomList.size() < count) {
+            System.out.println("Введіть параметри кімнати у двійковій системі (довжина ширина висота через пробіл):");
+            if (!scanner.hasNextLine()) {
+                break;
+            }
+            try {
+                parser.feed(scanner.nextLine()).feed("\n");
+            } catch (RoomFormatException e) {
+                System.out.println(e.getMessage());
+                parser.discardLine();
+            }
         }
 
         System.out.println("Результати обчислень:");
-        for (RoomData room : roomList) {
-            room.display();
+        try {
+            new RoomRenderer(RoomRenderer.Format.TABLE).render(roomList);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        RoomAnalytics.of(roomList, 3, 1).display();
+    }
+
+    private static void bulkImport(String[] args) {
+        String mode = args.length > 1 ? args[1] : "summary";
+        RoomImportPipeline pipeline = new RoomImportPipeline();
+        try (ReadableByteChannel input = args[0].equals("-")
+                ? Channels.newChannel(System.in)
+                : FileChannel.open(Paths.get(args[0]), StandardOpenOption.READ)) {
+            RoomBatchSink sink;
+            switch (mode) {
+                case "table":
+                    sink = new TableRoomSink(RoomRenderer.Format.TABLE);
+                    break;
+                case "csv":
+                    sink = new TableRoomSink(RoomRenderer.Format.CSV);
+                    break;
+                case "tsv":
+                    sink = new TableRoomSink(RoomRenderer.Format.TSV);
+                    break;
+                case "binary":
+                    if (args.length < 3) {
+                        System.out.println("Вкажіть вихідний файл для режиму binary.");
+                        return;
+                    }
+                    sink = new BinaryRoomSink(args[2]);
+                    break;
+                default:
+                    sink = new SummaryRoomSink();
+            }
+            long start = System.nanoTime();
+            long rooms = pipeline.run(input, sink);
+            System.out.printf("Імпортовано кімнат: %d, пропущено рядків: %d, час: %d мс%n",
+                    rooms, pipeline.errors(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 }
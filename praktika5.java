@@ -1,42 +1,1085 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Запис історії, який можна лише скасувати
+ */
+interface Undoable {
+    void undo();
+
+    /**
+     * Приблизний обсяг пам'яті, який займає запис разом з даними
+     */
+    default long estimatedBytes() {
+        return 64;
+    }
+}
 
 /**
  * Інтерфейс команди
  */
-interface Command {
+interface Command extends Undoable {
     void execute();
-    void undo();
+
+    /**
+     * Компактна форма вже виконаної команди, що зберігає лише інформацію для скасування
+     */
+    default Undoable compact() {
+        return this;
+    }
+}
+
+/**
+ * Обчислювальне ядро солвера.
+ * Пакетний метод має містити власний цикл по масиву, щоб виклик через інтерфейс
+ * відбувався один раз на пакет, а не на кожен елемент.
+ * Сторонні ядра підключаються через ServiceLoader (META-INF/services/ComputationKernel)
+ * і повинні мати публічний конструктор без параметрів.
+ */
+interface ComputationKernel {
+    String name();
+
+    double apply(double value);
+
+    /**
+     * Обчислення results[i] = apply(inputs[i]) для i з [from, to)
+     */
+    void applyAll(double[] inputs, double[] results, int from, int to);
+}
+
+/**
+ * Ядро за замовчуванням: квадратний корінь
+ */
+class SqrtKernel implements ComputationKernel {
+    @Override
+    public String name() {
+        return "sqrt";
+    }
+
+    @Override
+    public double apply(double value) {
+        return Math.sqrt(value);
+    }
+
+    @Override
+    public void applyAll(double[] inputs, double[] results, int from, int to) {
+        for (int i = from; i < to; i++) {
+            results[i] = Math.sqrt(inputs[i]);
+        }
+    }
+}
+
+/**
+ * Многочлен c0 + c1*x + ... + cn*x^n, обчислюваний за схемою Горнера
+ */
+class PolynomialKernel implements ComputationKernel {
+    private final String name;
+    private final double[] coefficients;
+
+    public PolynomialKernel(String name, double... coefficients) {
+        if (coefficients.length == 0) {
+            throw new IllegalArgumentException("Polynomial needs at least one coefficient");
+        }
+        this.name = name;
+        this.coefficients = coefficients.clone();
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public double apply(double value) {
+        double result = coefficients[coefficients.length - 1];
+        for (int k = coefficients.length - 2; k >= 0; k--) {
+            result = result * value + coefficients[k];
+        }
+        return result;
+    }
+
+    @Override
+    public void applyAll(double[] inputs, double[] results, int from, int to) {
+        double[] c = coefficients;
+        for (int i = from; i < to; i++) {
+            double x = inputs[i];
+            double result = c[c.length - 1];
+            for (int k = c.length - 2; k >= 0; k--) {
+                result = result * x + c[k];
+            }
+            results[i] = result;
+        }
+    }
+}
+
+/**
+ * Реєстр доступних ядер: вбудовані та знайдені через ServiceLoader
+ */
+class KernelRegistry {
+    private static final Map<String, ComputationKernel> kernels = new ConcurrentHashMap<>();
+
+    static {
+        register(new SqrtKernel());
+        register(new PolynomialKernel("square", 0, 0, 1));
+        for (ComputationKernel kernel : ServiceLoader.load(ComputationKernel.class)) {
+            register(kernel);
+        }
+    }
+
+    private KernelRegistry() {}
+
+    public static void register(ComputationKernel kernel) {
+        kernels.put(kernel.name(), kernel);
+    }
+
+    public static ComputationKernel get(String name) {
+        ComputationKernel kernel = kernels.get(name);
+        if (kernel == null) {
+            throw new IllegalArgumentException("Unknown computation kernel: " + name);
+        }
+        return kernel;
+    }
+
+    public static Set<String> names() {
+        return new TreeSet<>(kernels.keySet());
+    }
+}
+
+/**
+ * Обмежений кеш результатів обчислень з ключем double без упаковки.
+ * Таблиця розбита на набори по WAYS записів; у межах набору витіснення
+ * відбувається за алгоритмом CLOCK (біт звернення дає запису "другий шанс").
+ * Набори згруповані у смуги з окремими блокуваннями; пакетні операції групують ключі
+ * за смугами й беруть кожне блокування один раз на весь пакет.
+ */
+class ResultCache {
+    private static final int WAYS = 8;
+    private static final int STRIPES = 64;
+    private static final byte EMPTY = 0;
+    private static final byte PRESENT = 1;
+    private static final byte REFERENCED = 2;
+
+    private final long[] keys;
+    private final double[] values;
+    private final byte[] states;
+    private final byte[] hands;
+    private final int setMask;
+    private final Object[] locks = new Object[STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity максимальна кількість записів (округлюється до степеня двійки)
+     */
+    public ResultCache(int capacity) {
+        int sets = Integer.highestOneBit(Math.max(1, (capacity + WAYS - 1) / WAYS - 1)) << 1;
+        keys = new long[sets * WAYS];
+        values = new double[sets * WAYS];
+        states = new byte[sets * WAYS];
+        hands = new byte[sets];
+        setMask = sets - 1;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Пошук результату; при влучанні значення записується в out[index]
+     * @return true, якщо результат знайдено
+     */
+    public boolean lookup(double key, double[] out, int index) {
+        long bits = Double.doubleToRawLongBits(key);
+        int set = set(bits);
+        synchronized (locks[set & (STRIPES - 1)]) {
+            int slot = find(set, bits);
+            if (slot >= 0) {
+                out[index] = values[slot];
+                hits.increment();
+                return true;
+            }
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Пакетний пошук для keys[from, to); знайдені результати записуються в out за тими ж індексами
+     * @param missIndex масив довжиною не менше to - from для індексів промахів (у довільному порядку)
+     * @return кількість промахів
+     */
+    public int lookupAll(double[] keys, double[] out, int from, int to, int[] missIndex) {
+        int n = to - from;
+        long[] bits = new long[n];
+        for (int i = 0; i < n; i++) {
+            bits[i] = Double.doubleToRawLongBits(keys[from + i]);
+        }
+        int[] stripeStart = new int[STRIPES + 1];
+        int[] order = groupByStripe(bits, n, stripeStart);
+        int missCount = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            if (stripeStart[stripe] == stripeStart[stripe + 1]) {
+                continue;
+            }
+            synchronized (locks[stripe]) {
+                for (int j = stripeStart[stripe]; j < stripeStart[stripe + 1]; j++) {
+                    int i = order[j];
+                    int slot = find(set(bits[i]), bits[i]);
+                    if (slot >= 0) {
+                        out[from + i] = values[slot];
+                    } else {
+                        missIndex[missCount++] = from + i;
+                    }
+                }
+            }
+        }
+        hits.add(n - missCount);
+        misses.add(missCount);
+        return missCount;
+    }
+
+    public void put(double key, double value) {
+        long bits = Double.doubleToRawLongBits(key);
+        int set = set(bits);
+        synchronized (locks[set & (STRIPES - 1)]) {
+            insert(set, bits, value);
+        }
+    }
+
+    /**
+     * Пакетне додавання пар keys[i], values[i] для i у [0, count)
+     */
+    public void putAll(double[] keys, double[] values, int count) {
+        long[] bits = new long[count];
+        for (int i = 0; i < count; i++) {
+            bits[i] = Double.doubleToRawLongBits(keys[i]);
+        }
+        int[] stripeStart = new int[STRIPES + 1];
+        int[] order = groupByStripe(bits, count, stripeStart);
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            if (stripeStart[stripe] == stripeStart[stripe + 1]) {
+                continue;
+            }
+            synchronized (locks[stripe]) {
+                for (int j = stripeStart[stripe]; j < stripeStart[stripe + 1]; j++) {
+                    int i = order[j];
+                    insert(set(bits[i]), bits[i], values[i]);
+                }
+            }
+        }
+    }
+
+    public double computeIfAbsent(double key, DoubleUnaryOperator function) {
+        long bits = Double.doubleToRawLongBits(key);
+        int set = set(bits);
+        Object lock = locks[set & (STRIPES - 1)];
+        synchronized (lock) {
+            int slot = find(set, bits);
+            if (slot >= 0) {
+                hits.increment();
+                return values[slot];
+            }
+        }
+        misses.increment();
+        double value = function.applyAsDouble(key);
+        synchronized (lock) {
+            insert(set, bits, value);
+        }
+        return value;
+    }
+
+    /**
+     * Пошук ключа в наборі з позначкою звернення; викликається під блокуванням смуги
+     * @return позиція запису або -1
+     */
+    private int find(int set, long bits) {
+        int base = set * WAYS;
+        for (int i = base; i < base + WAYS; i++) {
+            if (states[i] != EMPTY && keys[i] == bits) {
+                states[i] = REFERENCED;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Додавання або заміна запису в наборі; викликається під блокуванням смуги
+     */
+    private void insert(int set, long bits, double value) {
+        int base = set * WAYS;
+        for (int i = base; i < base + WAYS; i++) {
+            if (states[i] == EMPTY || keys[i] == bits) {
+                keys[i] = bits;
+                values[i] = value;
+                states[i] = PRESENT;
+                return;
+            }
+        }
+        // CLOCK: пропускаємо записи з бітом звернення, скидаючи його
+        int hand = hands[set];
+        while (states[base + hand] == REFERENCED) {
+            states[base + hand] = PRESENT;
+            hand = (hand + 1) % WAYS;
+        }
+        keys[base + hand] = bits;
+        values[base + hand] = value;
+        states[base + hand] = PRESENT;
+        hands[set] = (byte) ((hand + 1) % WAYS);
+        evictions.increment();
+    }
+
+    /**
+     * Сортування індексів пакета підрахунком за смугами
+     * @param stripeStart заповнюється межами груп: смуга s займає order[stripeStart[s], stripeStart[s + 1])
+     */
+    private int[] groupByStripe(long[] bits, int n, int[] stripeStart) {
+        for (int i = 0; i < n; i++) {
+            stripeStart[(set(bits[i]) & (STRIPES - 1)) + 1]++;
+        }
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            stripeStart[stripe + 1] += stripeStart[stripe];
+        }
+        int[] next = Arrays.copyOf(stripeStart, STRIPES);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[next[set(bits[i]) & (STRIPES - 1)]++] = i;
+        }
+        return order;
+    }
+
+    public void clear() {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            synchronized (locks[stripe]) {
+                for (int set = stripe; set <= setMask; set += STRIPES) {
+                    Arrays.fill(states, set * WAYS, set * WAYS + WAYS, EMPTY);
+                }
+            }
+        }
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    public long hits() { return hits.sum(); }
+    public long misses() { return misses.sum(); }
+    public long evictions() { return evictions.sum(); }
+
+    @Override
+    public String toString() {
+        return "ResultCache{capacity=" + capacity() + ", hits=" + hits() + ", misses=" + misses()
+                + ", evictions=" + evictions() + "}";
+    }
+
+    private int set(long bits) {
+        bits ^= bits >>> 33;
+        bits *= 0xff51afd7ed558ccdL;
+        bits ^= bits >>> 33;
+        return (int) bits & setMask;
+    }
 }
 
 /**
- * Клас для обчислень з підтримкою Singleton
+ * Клас для обчислень з підтримкою Singleton.
+ * Безпечний для використання з багатьох потоків: кожне обчислення отримує унікальний
+ * ідентифікатор, а сховище не має глобального блокування.
+ * Обчислення зберігаються блоками з послідовними ідентифікаторами: одиночне додавання
+ * створює блок з одного елемента, пакетне — один блок на весь пакет.
  */
 class SolverSingleton {
-    private static SolverSingleton instance;
-    private List<ComputationData> computations = new ArrayList<>();
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+    private static final int CHUNK_SIZE = 1 << 13;
+
+    /**
+     * Блок обчислень, що змінюється під власним монітором: видалений елемент позначається null
+     * на місці, а логічна довжина відсікає видалений хвіст, тож видалення коштує O(1)
+     * і скасування з кінця не переглядає вже видалені елементи
+     */
+    private static final class Block {
+        final ComputationData[] items;
+        int length;
+        int live;
+        boolean detached;
+
+        Block(ComputationData[] items) {
+            this.items = items;
+            this.length = items.length;
+            this.live = items.length;
+        }
+    }
+
+    private final ConcurrentSkipListMap<Long, Block> computations = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile KernelSlot slot = new KernelSlot(new SqrtKernel());
+    private volatile ComputationJournal journal;
+    /**
+     * Зміни (запис у журнал разом із застосуванням) беруть спільне блокування,
+     * знімок стану — виключне, тому знімок бачить усі записані в журнал зміни
+     */
+    private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+
+    /**
+     * Активне ядро разом з його кешем: результати різних ядер не змішуються,
+     * а пакетне обчислення читає слот один раз
+     */
+    private static final class KernelSlot {
+        final ComputationKernel kernel;
+        final ResultCache cache = new ResultCache(1 << 16);
+        final DoubleUnaryOperator function;
+
+        KernelSlot(ComputationKernel kernel) {
+            this.kernel = kernel;
+            this.function = kernel::apply;
+        }
+    }
 
     private SolverSingleton() {}
 
+    /**
+     * Лінива ініціалізація через клас-утримувач (гарантується завантажувачем класів)
+     */
+    private static class Holder {
+        static final SolverSingleton INSTANCE = new SolverSingleton();
+    }
+
     public static SolverSingleton getInstance() {
-        if (instance == null) {
-            instance = new SolverSingleton();
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Підключення журналу: стан відновлюється з нього, а всі подальші зміни записуються
+     */
+    public synchronized void attachJournal(ComputationJournal journal) throws IOException {
+        SortedMap<Long, ComputationData> recovered = journal.recover();
+        computations.clear();
+        for (Map.Entry<Long, ComputationData> entry : recovered.entrySet()) {
+            computations.put(entry.getKey(), new Block(new ComputationData[] { entry.getValue() }));
+        }
+        size.set(recovered.size());
+        nextId.set(journal.maxId() + 1);
+        this.journal = journal;
+    }
+
+    /**
+     * Заміна обчислювального ядра; кеш нового ядра починається порожнім
+     */
+    public void setKernel(ComputationKernel kernel) {
+        slot = new KernelSlot(kernel);
+    }
+
+    public void setKernel(String name) {
+        setKernel(KernelRegistry.get(name));
+    }
+
+    public ComputationKernel getKernel() {
+        return slot.kernel;
+    }
+
+    /**
+     * Кеш результатів активного ядра, спільний для одиночних і пакетних обчислень
+     */
+    public ResultCache getCache() {
+        return slot.cache;
+    }
+
+    /**
+     * Обчислення результату для одного значення
+     */
+    public double compute(double value) {
+        KernelSlot current = slot;
+        return current.cache.computeIfAbsent(value, current.function);
+    }
+
+    /**
+     * Пакетне обчислення результатів: спершу результати шукаються в кеші,
+     * решта обчислюється простим циклом по масиву, що JIT векторизує;
+     * великі пакети обробляються паралельно по фрагментах
+     */
+    public void computeAll(double[] inputs, double[] results) {
+        KernelSlot current = slot;
+        int n = inputs.length;
+        if (n < PARALLEL_THRESHOLD) {
+            computeRange(current, inputs, results, 0, n);
+            return;
+        }
+        IntStream.range(0, (n + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel()
+                .forEach(chunk -> computeRange(current, inputs, results, chunk * CHUNK_SIZE,
+                        Math.min(n, (chunk + 1) * CHUNK_SIZE)));
+    }
+
+    private static void computeRange(KernelSlot slot, double[] inputs, double[] results, int from, int to) {
+        ResultCache cache = slot.cache;
+        int[] missIndex = new int[to - from];
+        int misses = cache.lookupAll(inputs, results, from, to, missIndex);
+        if (misses == 0) {
+            return;
+        }
+        double[] missInputs = new double[misses];
+        for (int i = 0; i < misses; i++) {
+            missInputs[i] = inputs[missIndex[i]];
+        }
+        double[] missResults = new double[misses];
+        slot.kernel.applyAll(missInputs, missResults, 0, misses);
+        for (int i = 0; i < misses; i++) {
+            results[missIndex[i]] = missResults[i];
         }
-        return instance;
+        cache.putAll(missInputs, missResults, misses);
     }
 
-    public void addComputation(ComputationData data) {
-        computations.add(data);
+    /**
+     * Додавання обчислення
+     * @return ідентифікатор, за яким саме це обчислення можна скасувати
+     */
+    public long addComputation(ComputationData data) {
+        return addComputations(new ComputationData[] { data });
+    }
+
+    /**
+     * Додавання пакета обчислень однією операцією
+     * @return ідентифікатор першого обчислення; пакет займає [id, id + data.length)
+     */
+    public long addComputations(ComputationData[] data) {
+        long firstId = nextId.getAndAdd(data.length);
+        if (data.length == 0) {
+            return firstId;
+        }
+        ComputationJournal current = journal;
+        stateLock.readLock().lock();
+        try {
+            if (current != null) {
+                long seq = 0;
+                for (int i = 0; i < data.length; i++) {
+                    seq = current.logAdd(firstId + i, data[i]);
+                }
+                current.commit(seq);
+            }
+            computations.put(firstId, new Block(data));
+            size.addAndGet(data.length);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        snapshotIfDue(current);
+        return firstId;
+    }
+
+    /**
+     * Скасування конкретного обчислення, не зачіпаючи обчислення інших потоків
+     */
+    public boolean removeComputation(long id) {
+        ComputationJournal current = journal;
+        boolean removed;
+        stateLock.readLock().lock();
+        try {
+            removed = removeLocked(id, current);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        if (removed) {
+            snapshotIfDue(current);
+        }
+        return removed;
+    }
+
+    private boolean removeLocked(long id, ComputationJournal current) {
+        Map.Entry<Long, Block> entry = computations.floorEntry(id);
+        if (entry == null) {
+            return false;
+        }
+        Block block = entry.getValue();
+        long offset = id - entry.getKey();
+        if (offset >= block.items.length) {
+            return false;
+        }
+        int index = (int) offset;
+        synchronized (block) {
+            if (index >= block.length || block.items[index] == null) {
+                return false;
+            }
+        }
+        if (current != null) {
+            // Повторне видалення при відновленні безпечне, тому запис іде до зміни стану
+            current.commit(current.logRemove(id));
+        }
+        synchronized (block) {
+            if (block.detached || index >= block.length || block.items[index] == null) {
+                return false; // Інший потік встиг першим
+            }
+            block.items[index] = null;
+            block.live--;
+            while (block.length > 0 && block.items[block.length - 1] == null) {
+                block.length--;
+            }
+            if (block.live == 0) {
+                block.detached = true;
+                computations.remove(entry.getKey(), block);
+            }
+        }
+        size.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Скасування цілого пакета, доданого addComputations, за O(log n)
+     */
+    public boolean removeComputations(long firstId) {
+        ComputationJournal current = journal;
+        Block block;
+        stateLock.readLock().lock();
+        try {
+            block = computations.get(firstId);
+            if (block == null) {
+                return false;
+            }
+            if (current != null) {
+                current.commit(current.logRemoveRange(firstId, firstId + block.items.length));
+            }
+            int removed;
+            synchronized (block) {
+                if (block.detached) {
+                    return false;
+                }
+                block.detached = true;
+                removed = block.live;
+                block.live = 0;
+                block.length = 0;
+            }
+            computations.remove(firstId, block);
+            size.addAndGet(-removed);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        snapshotIfDue(current);
+        return true;
     }
 
     public void removeLastComputation() {
-        if (!computations.isEmpty()) {
-            computations.remove(computations.size() - 1);
+        while (true) {
+            Map.Entry<Long, Block> last = computations.lastEntry();
+            if (last == null) {
+                return;
+            }
+            Block block = last.getValue();
+            int index;
+            synchronized (block) {
+                index = block.length - 1; // Видалений хвіст уже відсічено
+            }
+            if (index < 0) {
+                computations.remove(last.getKey(), block);
+            } else if (removeComputation(last.getKey() + index)) {
+                return;
+            }
         }
     }
 
+    private void snapshotIfDue(ComputationJournal current) {
+        if (current == null || !current.snapshotDue()) {
+            return;
+        }
+        stateLock.writeLock().lock();
+        try {
+            current.snapshot(this::toMap);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    private SortedMap<Long, ComputationData> toMap() {
+        SortedMap<Long, ComputationData> result = new TreeMap<>();
+        for (Map.Entry<Long, Block> entry : computations.entrySet()) {
+            Block block = entry.getValue();
+            synchronized (block) {
+                for (int i = 0; i < block.length; i++) {
+                    if (block.items[i] != null) {
+                        result.put(entry.getKey() + i, block.items[i]);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Знімок обчислень у порядку додавання
+     */
     public List<ComputationData> getComputations() {
-        return computations;
+        List<ComputationData> result = new ArrayList<>(size.get());
+        for (Block block : computations.values()) {
+            synchronized (block) {
+                for (int i = 0; i < block.length; i++) {
+                    if (block.items[i] != null) {
+                        result.add(block.items[i]);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size.get();
+    }
+}
+
+/**
+ * Журнал змін обчислень (write-ahead log) зі знімками стану.
+ * Кожна зміна дописується в кінець журналу за O(1); записи накопичуються в буфері
+ * і скидаються на диск разом з одним fsync (group commit). У режимі SYNC виклик commit
+ * чекає, доки його запис опиниться на диску, а записи одночасних викликів потрапляють
+ * в одну групу; у режимі ASYNC групи скидає фоновий потік, і зміни останніх
+ * groupCommitMillis можуть бути втрачені при аварії.
+ * Періодично стан зберігається у знімок, після чого журнал очищується.
+ * Відновлення: завантаження знімка і повтор записів журналу, новіших за нього.
+ * Записи адресують обчислення за ідентифікатором, тому їх повторне застосування безпечне.
+ */
+class ComputationJournal implements Closeable {
+    /**
+     * Коли зміна вважається збереженою
+     */
+    public enum Durability {
+        /** commit повертається лише після fsync групи, що містить запис */
+        SYNC,
+        /** commit нічого не чекає; групи скидаються фоновим потоком */
+        ASYNC
+    }
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 3;
+    private static final byte OP_REMOVE_RANGE = 4;
+    private static final int RECORD_SIZE = 37; // op, seq, id, два 8-байтові поля даних, crc
+    private static final int SNAPSHOT_MAGIC = 0x43534E50; // "CSNP"
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_HEADER_SIZE = 28;
+    private static final int SNAPSHOT_RECORD_SIZE = 24;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path journalPath;
+    private final Path snapshotPath;
+    private final long groupCommitMillis;
+    private final int snapshotInterval;
+    private final Durability durability;
+    private final Object flushLock = new Object();
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel channel;
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocate(BUFFER_SIZE);
+    private long nextSeq = 1;
+    private long maxId;
+    private int recordsSinceSnapshot;
+    private volatile long durableSeq;
+    private volatile IOException failure;
+    private Thread flusher;
+
+    public ComputationJournal(String baseName) {
+        this(baseName, 10, 100_000, Durability.SYNC);
+    }
+
+    /**
+     * @param baseName          спільна частина імен файлів журналу (.journal) і знімка (.snapshot)
+     * @param groupCommitMillis інтервал фонового скидання накопичених записів на диск
+     * @param snapshotInterval  кількість записів між знімками стану
+     * @param durability        чи чекає commit на fsync
+     */
+    public ComputationJournal(String baseName, long groupCommitMillis, int snapshotInterval,
+            Durability durability) {
+        this.journalPath = Paths.get(baseName + ".journal");
+        this.snapshotPath = Paths.get(baseName + ".snapshot");
+        this.groupCommitMillis = groupCommitMillis;
+        this.snapshotInterval = snapshotInterval;
+        this.durability = durability;
+    }
+
+    /**
+     * Відновлення стану та відкриття журналу для запису.
+     * Пошкоджений хвіст журналу (незавершений запис під час аварії) відкидається.
+     */
+    public SortedMap<Long, ComputationData> recover() throws IOException {
+        SortedMap<Long, ComputationData> state = new TreeMap<>();
+        long lastSeq = readSnapshot(state);
+        channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.limit(0);
+        long validEnd = 0;
+        while (true) {
+            if (buffer.remaining() < RECORD_SIZE) {
+                buffer.compact();
+                while (buffer.position() < RECORD_SIZE && channel.read(buffer) > 0) {
+                    // Дочитування до повного запису
+                }
+                buffer.flip();
+                if (buffer.remaining() < RECORD_SIZE) {
+                    break;
+                }
+            }
+            int start = buffer.position();
+            crc.reset();
+            crc.update(buffer.array(), start, RECORD_SIZE - 4);
+            byte op = buffer.get();
+            long seq = buffer.getLong();
+            long id = buffer.getLong();
+            long first = buffer.getLong();
+            long second = buffer.getLong();
+            if (buffer.getInt() != (int) crc.getValue() || op < OP_ADD || op > OP_REMOVE_RANGE) {
+                break;
+            }
+            maxId = Math.max(maxId, op == OP_REMOVE_RANGE ? first - 1 : id);
+            validEnd += RECORD_SIZE;
+            if (seq <= lastSeq) {
+                continue; // Вже враховано у знімку
+            }
+            lastSeq = seq;
+            if (op == OP_ADD) {
+                ComputationData data = new ComputationData(Double.longBitsToDouble(first));
+                data.setResult(Double.longBitsToDouble(second));
+                state.put(id, data);
+            } else if (op == OP_REMOVE) {
+                state.remove(id);
+            } else if (op == OP_REMOVE_RANGE) {
+                state.subMap(id, first).clear();
+            }
+            recordsSinceSnapshot++;
+        }
+        channel.truncate(validEnd);
+        channel.position(validEnd);
+        nextSeq = lastSeq + 1;
+        durableSeq = lastSeq;
+
+        flusher = new Thread(this::flushPeriodically, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        return state;
+    }
+
+    /**
+     * Найбільший ідентифікатор, що зустрічався у знімку чи журналі
+     */
+    public synchronized long maxId() {
+        return maxId;
+    }
+
+    /**
+     * @return номер запису для commit
+     */
+    public long logAdd(long id, ComputationData data) {
+        return append(OP_ADD, id, Double.doubleToRawLongBits(data.getInput()),
+                Double.doubleToRawLongBits(data.getResult()));
+    }
+
+    public long logRemove(long id) {
+        return append(OP_REMOVE, id, 0, 0);
+    }
+
+    /**
+     * Видалення всіх обчислень з ідентифікаторами [fromId, toId) одним записом
+     */
+    public long logRemoveRange(long fromId, long toId) {
+        return append(OP_REMOVE_RANGE, fromId, toId, 0);
+    }
+
+    /**
+     * Підтвердження записів до seq включно. У режимі SYNC перший потік, що дочекався
+     * flushLock, скидає всю накопичену групу одним fsync, решта лише перевіряють durableSeq.
+     */
+    public void commit(long seq) {
+        if (durability == Durability.ASYNC || seq <= durableSeq) {
+            return;
+        }
+        flush(seq);
+        if (failure != null) {
+            throw new UncheckedIOException("Journal is not writable", failure);
+        }
+    }
+
+    private long append(byte op, long id, long first, long second) {
+        if (failure != null) {
+            throw new UncheckedIOException("Journal is not writable", failure);
+        }
+        while (true) {
+            synchronized (this) {
+                if (pending.remaining() >= RECORD_SIZE) {
+                    int start = pending.position();
+                    pending.put(op).putLong(nextSeq++).putLong(id).putLong(first).putLong(second);
+                    crc.reset();
+                    crc.update(pending.array(), start, RECORD_SIZE - 4);
+                    pending.putInt((int) crc.getValue());
+                    recordsSinceSnapshot++;
+                    maxId = Math.max(maxId, op == OP_REMOVE_RANGE ? first - 1 : id);
+                    return nextSeq - 1;
+                }
+            }
+            flush(Long.MAX_VALUE); // Буфер заповнено раніше, ніж спрацював таймер
+        }
+    }
+
+    public synchronized boolean snapshotDue() {
+        return recordsSinceSnapshot >= snapshotInterval;
+    }
+
+    /**
+     * Збереження знімка поточного стану й очищення журналу.
+     * Викликач гарантує, що stateSupplier повертає стан з усіма вже записаними в журнал змінами
+     * і що нові зміни тим часом не застосовуються; нові записи в журнал заблоковані до кінця знімка.
+     * Якщо попереднє скидання на диск не вдалося, знімок не створюється, а помилка повторюється.
+     */
+    public void snapshot(Supplier<? extends Map<Long, ComputationData>> stateSupplier) throws IOException {
+        synchronized (flushLock) {
+            synchronized (this) {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (recordsSinceSnapshot == 0) {
+                    return;
+                }
+                flush(Long.MAX_VALUE);
+                if (failure != null) {
+                    throw failure;
+                }
+                long lastSeq = nextSeq - 1;
+                Map<Long, ComputationData> state = stateSupplier.get();
+                Path tmp = Paths.get(snapshotPath + ".tmp");
+                try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                    buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(lastSeq).putLong(maxId);
+                    int countPosition = buffer.position();
+                    buffer.putInt(0);
+                    int count = 0;
+                    for (Map.Entry<Long, ComputationData> entry : state.entrySet()) {
+                        if (buffer.remaining() < SNAPSHOT_RECORD_SIZE) {
+                            BinaryComputationCodec.flush(out, buffer);
+                        }
+                        ComputationData data = entry.getValue();
+                        buffer.putLong(entry.getKey()).putDouble(data.getInput()).putDouble(data.getResult());
+                        count++;
+                    }
+                    BinaryComputationCodec.flush(out, buffer);
+                    // Стан може змінюватися під час обходу, тому кількість записується після нього
+                    buffer.putInt(count);
+                    buffer.flip();
+                    out.write(buffer, countPosition);
+                    out.force(true);
+                }
+                Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                // Записи до lastSeq вже у знімку; при аварії до цього моменту вони просто пропускаються
+                channel.truncate(0);
+                channel.position(0);
+                recordsSinceSnapshot = 0;
+            }
+        }
+    }
+
+    /**
+     * Очікування, доки всі записи, додані до цього моменту, опиняться на диску
+     */
+    public void sync() throws IOException {
+        flush(Long.MAX_VALUE);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Запис накопиченого буфера з одним fsync на всю групу.
+     * Нові записи тим часом накопичуються у другому буфері.
+     * @param seq запис, що має опинитися на диску; якщо його вже скинула попередня група, нічого не робиться
+     */
+    private void flush(long seq) {
+        synchronized (flushLock) {
+            if (seq <= durableSeq || failure != null) {
+                return;
+            }
+            ByteBuffer batch;
+            long batchSeq;
+            synchronized (this) {
+                if (pending.position() == 0) {
+                    return;
+                }
+                batch = pending;
+                batchSeq = nextSeq - 1;
+                pending = spare;
+                spare = batch;
+            }
+            try {
+                BinaryComputationCodec.flush(channel, batch);
+                channel.force(false);
+                durableSeq = batchSeq;
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flushPeriodically() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(groupCommitMillis);
+            } catch (InterruptedException e) {
+                break;
+            }
+            flush(Long.MAX_VALUE);
+        }
+    }
+
+    private long readSnapshot(SortedMap<Long, ComputationData> state) throws IOException {
+        if (!Files.exists(snapshotPath)) {
+            return 0;
+        }
+        try (FileChannel in = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if (buffer.remaining() < SNAPSHOT_HEADER_SIZE || buffer.getInt() != SNAPSHOT_MAGIC
+                    || buffer.getInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Corrupted journal snapshot: " + snapshotPath);
+            }
+            long lastSeq = buffer.getLong();
+            maxId = buffer.getLong();
+            int count = buffer.getInt();
+            if (count < 0 || buffer.remaining() != (long) count * SNAPSHOT_RECORD_SIZE) {
+                throw new IOException("Corrupted journal snapshot: " + snapshotPath);
+            }
+            for (int i = 0; i < count; i++) {
+                long id = buffer.getLong();
+                ComputationData data = new ComputationData(buffer.getDouble());
+                data.setResult(buffer.getDouble());
+                state.put(id, data);
+            }
+            return lastSeq;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+        if (channel != null) {
+            sync();
+            channel.close();
+        }
     }
 }
 
@@ -46,20 +1089,60 @@ class SolverSingleton {
 class ComputeCommand implements Command {
     private SolverSingleton solver = SolverSingleton.getInstance();
     private ComputationData data;
+    private volatile long id = -1;
+    private boolean computed;
 
     public ComputeCommand(double value) {
         this.data = new ComputationData(value);
-        data.setResult(Math.sqrt(value));
     }
 
+    /**
+     * Обчислення виконується при першому виконанні команди, щоб макрокоманда могла
+     * обчислити весь пакет разом
+     */
     @Override
     public void execute() {
-        solver.addComputation(data);
+        if (!computed) {
+            data.setResult(solver.compute(data.getInput()));
+            computed = true;
+        }
+        id = solver.addComputation(data);
     }
 
+    ComputationData getData() {
+        return data;
+    }
+
+    @Override
+    public Undoable compact() {
+        return id >= 0 ? CompactUndo.removeComputation(id) : this;
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return 96; // Команда, ComputationData та посилання на них
+    }
+
+    void markComputed() {
+        computed = true;
+    }
+
+    /**
+     * Ідентифікатор, отриманий у складі пакета макрокоманди
+     */
+    void assignId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Скасовує саме це обчислення, навіть якщо інші потоки встигли додати свої
+     */
     @Override
     public void undo() {
-        solver.removeLastComputation();
+        if (id >= 0) {
+            solver.removeComputation(id);
+            id = -1;
+        }
     }
 }
 
@@ -68,24 +1151,600 @@ class ComputeCommand implements Command {
  */
 class MacroCommand implements Command {
     private List<Command> commands = new ArrayList<>();
+    private SolverSingleton solver = SolverSingleton.getInstance();
+    private long bulkFirstId = -1;
 
     public void addCommand(Command command) {
         commands.add(command);
     }
 
+    /**
+     * Якщо макрокоманда складається лише з ComputeCommand, усі значення обчислюються
+     * одним пакетом і додаються одним блоком
+     */
     @Override
     public void execute() {
+        if (commands.size() > 1 && isHomogeneous()) {
+            executeBulk();
+            return;
+        }
         for (Command command : commands) {
             command.execute();
         }
     }
 
+    private boolean isHomogeneous() {
+        for (Command command : commands) {
+            if (command.getClass() != ComputeCommand.class) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void executeBulk() {
+        int n = commands.size();
+        ComputationData[] data = new ComputationData[n];
+        double[] inputs = new double[n];
+        for (int i = 0; i < n; i++) {
+            ComputeCommand command = (ComputeCommand) commands.get(i);
+            data[i] = command.getData();
+            inputs[i] = data[i].getInput();
+        }
+        double[] results = new double[n];
+        solver.computeAll(inputs, results);
+        for (int i = 0; i < n; i++) {
+            data[i].setResult(results[i]);
+            ((ComputeCommand) commands.get(i)).markComputed();
+        }
+        bulkFirstId = solver.addComputations(data);
+        for (int i = 0; i < n; i++) {
+            ((ComputeCommand) commands.get(i)).assignId(bulkFirstId + i);
+        }
+    }
+
     @Override
     public void undo() {
+        if (bulkFirstId >= 0) {
+            solver.removeComputations(bulkFirstId);
+            bulkFirstId = -1;
+            for (Command command : commands) {
+                ((ComputeCommand) command).assignId(-1);
+            }
+            return;
+        }
         for (int i = commands.size() - 1; i >= 0; i--) {
             commands.get(i).undo();
         }
     }
+
+    @Override
+    public Undoable compact() {
+        if (bulkFirstId >= 0) {
+            return CompactUndo.removeBlock(bulkFirstId);
+        }
+        List<CompactUndo> parts = new ArrayList<>(commands.size());
+        for (Command command : commands) {
+            Undoable compacted = command.compact();
+            if (!(compacted instanceof CompactUndo)) {
+                return this;
+            }
+            parts.add((CompactUndo) compacted);
+        }
+        return CompactUndo.concat(parts);
+    }
+
+    @Override
+    public long estimatedBytes() {
+        long total = 48 + 8L * commands.size();
+        for (Command command : commands) {
+            total += command.estimatedBytes();
+        }
+        return total;
+    }
+}
+
+/**
+ * Компактний запис для скасування: замість об'єктів команд і даних зберігає
+ * лише пари (дія, ідентифікатор). Дії виконуються у зворотному порядку.
+ */
+final class CompactUndo implements Undoable {
+    static final byte REMOVE_COMPUTATION = 1;
+    static final byte REMOVE_BLOCK = 2;
+
+    private final byte[] actions;
+    private final long[] ids;
+
+    CompactUndo(byte[] actions, long[] ids) {
+        this.actions = actions;
+        this.ids = ids;
+    }
+
+    static CompactUndo removeComputation(long id) {
+        return new CompactUndo(new byte[] { REMOVE_COMPUTATION }, new long[] { id });
+    }
+
+    static CompactUndo removeBlock(long firstId) {
+        return new CompactUndo(new byte[] { REMOVE_BLOCK }, new long[] { firstId });
+    }
+
+    static CompactUndo concat(List<CompactUndo> parts) {
+        int total = 0;
+        for (CompactUndo part : parts) {
+            total += part.size();
+        }
+        byte[] actions = new byte[total];
+        long[] ids = new long[total];
+        int offset = 0;
+        for (CompactUndo part : parts) {
+            System.arraycopy(part.actions, 0, actions, offset, part.size());
+            System.arraycopy(part.ids, 0, ids, offset, part.size());
+            offset += part.size();
+        }
+        return new CompactUndo(actions, ids);
+    }
+
+    int size() {
+        return actions.length;
+    }
+
+    byte actionAt(int index) {
+        return actions[index];
+    }
+
+    long idAt(int index) {
+        return ids[index];
+    }
+
+    @Override
+    public void undo() {
+        SolverSingleton solver = SolverSingleton.getInstance();
+        for (int i = actions.length - 1; i >= 0; i--) {
+            if (actions[i] == REMOVE_BLOCK) {
+                solver.removeComputations(ids[i]);
+            } else {
+                solver.removeComputation(ids[i]);
+            }
+        }
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return 48 + 9L * actions.length;
+    }
+}
+
+/**
+ * Історія скасування з обмеженням пам'яті.
+ * Останні записи зберігаються повністю, старші стискаються до CompactUndo.
+ * Глибина й обсяг пам'яті рахуються для всіх записів, включно з нестисненими;
+ * при перевищенні найстаріші записи вивантажуються на диск (якщо задано файл) або відкидаються.
+ * Запис без компактної форми вивантажити неможливо, тому історія на ньому обрізається:
+ * разом з ним відкидаються й старші вивантажені записи, щоб скасування не перескочило через нього.
+ */
+class UndoHistory implements Closeable {
+    private final int hotEntries;
+    private final int maxDepth;
+    private final long maxBytes;
+    private final Deque<Command> hot = new ArrayDeque<>();
+    private final Deque<Undoable> cold = new ArrayDeque<>();
+    private final FileChannel spill;
+    private long spilledEntries;
+    private long bytes;
+
+    public UndoHistory() {
+        this(64, 100_000, 16L << 20, null);
+    }
+
+    /**
+     * @param hotEntries кількість останніх записів, що зберігаються без стиснення
+     * @param maxDepth   максимальна кількість записів у пам'яті
+     * @param maxBytes   максимальний приблизний обсяг записів у пам'яті
+     * @param spillFile  файл для вивантаження старих записів або null, щоб їх відкидати
+     */
+    public UndoHistory(int hotEntries, int maxDepth, long maxBytes, Path spillFile) {
+        this.hotEntries = hotEntries;
+        this.maxDepth = maxDepth;
+        this.maxBytes = maxBytes;
+        try {
+            this.spill = spillFile == null ? null : FileChannel.open(spillFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void push(Command command) {
+        hot.push(command);
+        bytes += command.estimatedBytes();
+        while (hot.size() > hotEntries) {
+            compactOldestHot();
+        }
+        while (hot.size() + cold.size() > maxDepth || bytes > maxBytes) {
+            if (cold.isEmpty()) {
+                if (hot.isEmpty()) {
+                    break;
+                }
+                compactOldestHot();
+            }
+            evictOldestCold();
+        }
+    }
+
+    private void compactOldestHot() {
+        Command oldest = hot.removeLast();
+        Undoable compacted = oldest.compact();
+        bytes += compacted.estimatedBytes() - oldest.estimatedBytes();
+        cold.push(compacted);
+    }
+
+    private void evictOldestCold() {
+        Undoable oldest = cold.removeLast();
+        bytes -= oldest.estimatedBytes();
+        if (spill == null) {
+            return;
+        }
+        if (oldest instanceof CompactUndo) {
+            writeSpilled((CompactUndo) oldest);
+        } else {
+            truncateSpilled();
+        }
+    }
+
+    /**
+     * Скасування останньої операції
+     * @return false, якщо скасовувати нічого
+     */
+    public boolean undo() {
+        Undoable command = hot.poll();
+        if (command == null) {
+            command = cold.poll();
+        }
+        if (command != null) {
+            bytes -= command.estimatedBytes();
+        } else if (spilledEntries > 0) {
+            command = readSpilled();
+        } else {
+            return false;
+        }
+        command.undo();
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return hot.isEmpty() && cold.isEmpty() && spilledEntries == 0;
+    }
+
+    public long size() {
+        return hot.size() + cold.size() + spilledEntries;
+    }
+
+    public long estimatedBytes() {
+        return bytes;
+    }
+
+    /**
+     * Запис на диск: пари (дія, ідентифікатор), потім їх кількість,
+     * щоб файл можна було читати з кінця як стек
+     */
+    private void writeSpilled(CompactUndo entry) {
+        ByteBuffer buffer = ByteBuffer.allocate(entry.size() * 9 + 4);
+        for (int i = 0; i < entry.size(); i++) {
+            buffer.put(entry.actionAt(i)).putLong(entry.idAt(i));
+        }
+        buffer.putInt(entry.size());
+        buffer.flip();
+        try {
+            long position = spill.size();
+            while (buffer.hasRemaining()) {
+                position += spill.write(buffer, position);
+            }
+            spilledEntries++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void truncateSpilled() {
+        try {
+            spill.truncate(0);
+            spilledEntries = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CompactUndo readSpilled() {
+        try {
+            long end = spill.size();
+            ByteBuffer countBuffer = ByteBuffer.allocate(4);
+            readFully(countBuffer, end - 4);
+            int count = countBuffer.getInt(0);
+            long start = end - 4 - count * 9L;
+            ByteBuffer buffer = ByteBuffer.allocate(count * 9);
+            readFully(buffer, start);
+            buffer.flip();
+            byte[] actions = new byte[count];
+            long[] ids = new long[count];
+            for (int i = 0; i < count; i++) {
+                actions[i] = buffer.get();
+                ids[i] = buffer.getLong();
+            }
+            spill.truncate(start);
+            spilledEntries--;
+            return new CompactUndo(actions, ids);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = spill.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Undo spill file is truncated");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spill != null) {
+            spill.close();
+        }
+    }
+}
+
+/**
+ * Інтерфейс формату збереження обчислень
+ */
+interface ComputationCodec {
+    void write(List<ComputationData> computations, String filename) throws IOException;
+    List<ComputationData> read(String filename) throws IOException;
+}
+
+/**
+ * Стандартна серіалізація Java
+ */
+class JavaComputationCodec implements ComputationCodec {
+    @Override
+    public void write(List<ComputationData> computations, String filename) throws IOException {
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+            oos.writeObject(computations);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<ComputationData> read(String filename) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+            return (List<ComputationData>) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+}
+
+/**
+ * Компактний двійковий формат: заголовок (сигнатура, версія, кількість записів),
+ * далі пари double (вхідне значення, результат)
+ */
+class BinaryComputationCodec implements ComputationCodec {
+    static final int MAGIC = 0x434F4D50; // "COMP"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 12;
+    static final int RECORD_SIZE = 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    @Override
+    public void write(List<ComputationData> computations, String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(computations.size());
+            for (ComputationData data : computations) {
+                if (buffer.remaining() < RECORD_SIZE) {
+                    flush(channel, buffer);
+                }
+                buffer.putDouble(data.getInput()).putDouble(data.getResult());
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    @Override
+    public List<ComputationData> read(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.limit(0);
+            fill(channel, buffer, HEADER_SIZE);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a binary computation file: " + filename);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported format version " + version + " in " + filename);
+            }
+            int count = buffer.getInt();
+            if (count < 0 || channel.size() != HEADER_SIZE + (long) count * RECORD_SIZE) {
+                throw new IOException("Corrupted binary computation file: " + filename);
+            }
+            List<ComputationData> computations = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                if (buffer.remaining() < RECORD_SIZE) {
+                    fill(channel, buffer, RECORD_SIZE);
+                }
+                ComputationData data = new ComputationData(buffer.getDouble());
+                data.setResult(buffer.getDouble());
+                computations.add(data);
+            }
+            return computations;
+        }
+    }
+
+    /**
+     * Запис вмісту буфера у канал повністю; буфер очищується для наступної порції
+     */
+    static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Дочитування у буфер щонайменше required байт
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer, int required) throws IOException {
+        buffer.compact();
+        while (buffer.position() < required) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+    }
+}
+
+/**
+ * Файл обчислень із записами фіксованого розміру, відображений у пам'ять.
+ * Відкриття не читає дані, будь-який запис доступний за індексом напряму.
+ * Запис: вхідне значення і результат (2 double).
+ */
+class MappedComputationStore implements Iterable<ComputationData>, Closeable {
+    static final int MAGIC = 0x434D4150; // "CMAP"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 16;
+    private static final int RECORDS_PER_REGION = (1 << 30) / RECORD_SIZE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final long size;
+
+    private MappedComputationStore(FileChannel channel, MappedByteBuffer[] regions, long size) {
+        this.channel = channel;
+        this.regions = regions;
+        this.size = size;
+    }
+
+    /**
+     * Потоковий запис обчислень у файл
+     */
+    public static void write(Iterable<ComputationData> computations, String filename) throws IOException {
+        try (FileChannel out = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * 4096);
+            out.position(HEADER_SIZE);
+            long count = 0;
+            for (ComputationData data : computations) {
+                if (buffer.remaining() < RECORD_SIZE) {
+                    BinaryComputationCodec.flush(out, buffer);
+                }
+                buffer.putDouble(data.getInput()).putDouble(data.getResult());
+                count++;
+            }
+            BinaryComputationCodec.flush(out, buffer);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(count);
+            buffer.flip();
+            out.write(buffer, 0);
+        }
+    }
+
+    /**
+     * Відкриття файлу за O(1): дані відображаються, але не читаються
+     */
+    public static MappedComputationStore open(String filename) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new EOFException("Unexpected end of file " + filename);
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a mapped computation file: " + filename);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported format version " + version + " in " + filename);
+            }
+            long count = header.getLong();
+            if (count < 0 || channel.size() < HEADER_SIZE + count * RECORD_SIZE) {
+                throw new IOException("Corrupted mapped computation file: " + filename);
+            }
+            int regionCount = (int) ((count + RECORDS_PER_REGION - 1) / RECORDS_PER_REGION);
+            MappedByteBuffer[] regions = new MappedByteBuffer[regionCount];
+            for (int i = 0; i < regionCount; i++) {
+                long first = (long) i * RECORDS_PER_REGION;
+                long records = Math.min(RECORDS_PER_REGION, count - first);
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * RECORD_SIZE,
+                        records * RECORD_SIZE);
+            }
+            return new MappedComputationStore(channel, regions, count);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public double getInput(long index) { return field(index, 0); }
+    public double getResult(long index) { return field(index, 8); }
+
+    /**
+     * Обчислення з індексом index як окремий об'єкт
+     */
+    public ComputationData get(long index) {
+        ComputationData data = new ComputationData(getInput(index));
+        data.setResult(getResult(index));
+        return data;
+    }
+
+    private double field(long index, int offset) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        MappedByteBuffer region = regions[(int) (index / RECORDS_PER_REGION)];
+        return region.getDouble((int) (index % RECORDS_PER_REGION) * RECORD_SIZE + offset);
+    }
+
+    /**
+     * Послідовний обхід без попередньої десеріалізації всього файлу
+     */
+    @Override
+    public Iterator<ComputationData> iterator() {
+        return new Iterator<ComputationData>() {
+            private long next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public ComputationData next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * Відображення звільняється збирачем сміття після закриття каналу
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
 }
 
 /**
@@ -93,8 +1752,12 @@ class MacroCommand implements Command {
  */
 class Demo {
     public static void serializeData(List<ComputationData> computations, String filename) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
-            oos.writeObject(computations);
+        serializeData(computations, filename, new JavaComputationCodec());
+    }
+
+    public static void serializeData(List<ComputationData> computations, String filename, ComputationCodec codec) {
+        try {
+            codec.write(computations, filename);
             System.out.println("Дані збережені.");
         } catch (IOException e) {
             e.printStackTrace();
@@ -102,9 +1765,13 @@ class Demo {
     }
 
     public static List<ComputationData> deserializeData(String filename) {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filename))) {
-            return (List<ComputationData>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
+        return deserializeData(filename, new JavaComputationCodec());
+    }
+
+    public static List<ComputationData> deserializeData(String filename, ComputationCodec codec) {
+        try {
+            return codec.read(filename);
+        } catch (IOException e) {
             e.printStackTrace();
             return new ArrayList<>();
         }
@@ -151,10 +1818,18 @@ public class praktika5 {
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
         SolverSingleton solver = SolverSingleton.getInstance();
-        Deque<Command> undoStack = new ArrayDeque<>();
+        UndoHistory undoStack = new UndoHistory();
         DisplayFactory factory = new TextDisplayFactory();
         Displayable display = factory.createDisplay();
 
+        ComputationJournal journal = new ComputationJournal("computations");
+        try {
+            solver.attachJournal(journal);
+            System.out.println("Відновлено обчислень: " + solver.getComputations().size());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
         while (true) {
             System.out.println("\nМеню:");
             System.out.println("1 - Додати обчислення");
@@ -175,8 +1850,7 @@ public class praktika5 {
                     break;
 
                 case 2:
-                    if (!undoStack.isEmpty()) {
-                        undoStack.pop().undo();
+                    if (undoStack.undo()) {
                         System.out.println("Остання операція скасована.");
                     } else {
                         System.out.println("Немає операцій для скасування.");
@@ -204,6 +1878,11 @@ public class praktika5 {
                     break;
 
                 case 5:
+                    try {
+                        journal.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
                     System.out.println("Програма завершена.");
                     return;
 
@@ -1,47 +1,2245 @@
+import java.io.*;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.stream.Collectors;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoublePredicate;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+import javax.management.*;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Колонкове сховище примітивних значень double.
+ * Дані зберігаються сторінками фіксованого розміру, тому додавання не копіює
+ * вже записані значення, а кожен елемент займає рівно 8 байт без упаковки в Double.
+ * Лише перша сторінка починається з малого розміру і подвоюється до повної,
+ * тому маленькі колонки не займають цілу сторінку.
+ * Колонка розрахована на одного потоку-записувача і будь-яку кількість читачів;
+ * для кількох записувачів використовується StripedDoubleStore.
+ */
+class DoubleColumn {
+    static final int PAGE_SHIFT = 14;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private volatile double[][] pages = new double[4][];
+    private volatile int size;
+
+    /**
+     * Додавання значення в кінець колонки (викликається лише потоком-власником)
+     */
+    public void append(double value) {
+        int index = size;
+        int page = index >>> PAGE_SHIFT;
+        double[][] current = pages;
+        if (page == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        int offset = index & PAGE_MASK;
+        double[] target = current[page];
+        if (target == null) {
+            target = new double[page == 0 ? INITIAL_CAPACITY : PAGE_SIZE];
+            current[page] = target;
+        } else if (offset == target.length) {
+            // Знімки, що вже тримають стару копію першої сторінки, бачать у ній свої значення незмінними
+            target = Arrays.copyOf(target, Math.min(PAGE_SIZE, target.length * 2));
+            current[page] = target;
+        }
+        target[offset] = value;
+        pages = current;
+        size = index + 1; // Публікація значення для читачів
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Знімок колонки: фіксує поточний розмір і бачить лише вже опубліковані значення
+     */
+    public DataSnapshot snapshot() {
+        int count = size;
+        double[][] current = pages;
+        int pageCount = (count + PAGE_MASK) >>> PAGE_SHIFT;
+        double[][] snapshotPages = new double[pageCount][];
+        int[] lengths = new int[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            snapshotPages[i] = current[i];
+            lengths[i] = Math.min(PAGE_SIZE, count - (i << PAGE_SHIFT));
+        }
+        return new DataSnapshot(snapshotPages, lengths, count);
+    }
+}
+
+/**
+ * Спільний вибір смуги для структур, розбитих за потоками-записувачами
+ * (StripedDoubleStore, RunningStats, ApproximateStats): кількість смуг — степінь двійки,
+ * не менша за кількість ядер, смуга обирається за ідентифікатором потоку.
+ */
+final class Striping {
+    static final int COUNT = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+    private static final int MASK = COUNT - 1;
+
+    private Striping() {}
+
+    /**
+     * Індекс смуги поточного потоку в [0, COUNT)
+     */
+    static int current() {
+        return (int) Thread.currentThread().getId() & MASK;
+    }
+}
+
+/**
+ * Сховище для багатьох потоків-записувачів.
+ * Значення розподіляються між фіксованою кількістю смуг-колонок за ідентифікатором потоку,
+ * кожна смуга має власне блокування, тому записувачі рідко конкурують,
+ * а пам'ять і вартість знімка не залежать від кількості потоків, що колись писали.
+ * Порядок зберігання: значення одного потоку йдуть у порядку додавання,
+ * значення різних потоків у знімку згруповані за смугами.
+ */
+class StripedDoubleStore {
+    private final DoubleColumn[] stripes;
+
+    public StripedDoubleStore() {
+        int count = Striping.COUNT;
+        stripes = new DoubleColumn[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new DoubleColumn();
+        }
+    }
+
+    public void append(double value) {
+        DoubleColumn stripe = stripes[Striping.current()];
+        synchronized (stripe) {
+            stripe.append(value);
+        }
+    }
+
+    public int size() {
+        int total = 0;
+        for (DoubleColumn stripe : stripes) {
+            total += stripe.size();
+        }
+        return total;
+    }
+
+    /**
+     * Смуги сховища; їх кількість не змінюється
+     */
+    DoubleColumn[] stripes() {
+        return stripes;
+    }
+
+    public DataSnapshot snapshot() {
+        DataSnapshot[] parts = new DataSnapshot[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            parts[i] = stripes[i].snapshot();
+        }
+        return DataSnapshot.concat(parts);
+    }
+}
+
+/**
+ * Незмінний результат статистичної обробки
+ */
+final class DataStats {
+    private final long count;
+    private final double min;
+    private final double max;
+    private final double sum;
+    private final double mean;
+    private final double variance;
+
+    DataStats(long count, double min, double max, double sum, double mean, double variance) {
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.mean = mean;
+        this.variance = variance;
+    }
+
+    public long getCount() { return count; }
+    public double getMin() { return min; }
+    public double getMax() { return max; }
+    public double getSum() { return sum; }
+    public double getMean() { return mean; }
+    public double getVariance() { return variance; }
+    public double getStdDev() { return Math.sqrt(variance); }
+
+    @Override
+    public String toString() {
+        return "DataStats{count=" + count + ", min=" + min + ", max=" + max + ", sum=" + sum
+                + ", mean=" + mean + ", variance=" + variance + "}";
+    }
+}
+
+/**
+ * Акумулятор для обчислення статистики за один прохід (алгоритм Велфорда).
+ * Часткові акумулятори різних потоків об'єднуються методом merge.
+ */
+class StatsAccumulator {
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+    private double mean;
+    private double m2;
+
+    public void add(double value) {
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+    }
+
+    /**
+     * Об'єднання з іншим акумулятором (формула Чана)
+     */
+    public StatsAccumulator merge(StatsAccumulator other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            count = other.count;
+            min = other.min;
+            max = other.max;
+            sum = other.sum;
+            mean = other.mean;
+            m2 = other.m2;
+            return this;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sum += other.sum;
+        return this;
+    }
+
+    /**
+     * Акумулятор з уже обчисленої статистики, наприклад для об'єднання часткових результатів
+     */
+    public static StatsAccumulator of(DataStats stats) {
+        StatsAccumulator accumulator = new StatsAccumulator();
+        if (stats.getCount() > 0) {
+            accumulator.count = stats.getCount();
+            accumulator.min = stats.getMin();
+            accumulator.max = stats.getMax();
+            accumulator.sum = stats.getSum();
+            accumulator.mean = stats.getMean();
+            accumulator.m2 = stats.getVariance() * stats.getCount();
+        }
+        return accumulator;
+    }
+
+    public DataStats toStats() {
+        if (count == 0) {
+            return new DataStats(0, Double.NaN, Double.NaN, 0, Double.NaN, Double.NaN);
+        }
+        return new DataStats(count, min, max, sum, mean, m2 / count);
+    }
+}
+
+/**
+ * Поточна статистика, що оновлюється при кожному додаванні значення.
+ * Акумулятори розбиті на смуги за потоками, тому записи з різних потоків не конкурують,
+ * а запит лише об'єднує фіксовану кількість смуг.
+ */
+class RunningStats {
+    private final StatsAccumulator[] stripes;
+
+    public RunningStats() {
+        int count = Striping.COUNT;
+        stripes = new StatsAccumulator[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new StatsAccumulator();
+        }
+    }
+
+    public void add(double value) {
+        StatsAccumulator stripe = stripes[Striping.current()];
+        synchronized (stripe) {
+            stripe.add(value);
+        }
+    }
+
+    /**
+     * Статистика за O(кількість смуг), незалежно від обсягу даних
+     */
+    public DataStats snapshot() {
+        StatsAccumulator total = new StatsAccumulator();
+        for (StatsAccumulator stripe : stripes) {
+            synchronized (stripe) {
+                total.merge(stripe);
+            }
+        }
+        return total.toStats();
+    }
+}
+
+/**
+ * Статистика за ковзними та фіксованими (tumbling) вікнами часу.
+ * Значення агрегуються в панелі фіксованої тривалості, що зберігаються в кільцевому буфері:
+ * запит об'єднує лише панелі вікна, а не окремі значення, застарілі панелі перезаписуються новими,
+ * тому пам'ять обмежена horizonMillis / paneMillis акумуляторами.
+ */
+class TimeWindowStats {
+    /**
+     * Агрегат значень з інтервалу [id * paneMillis, (id + 1) * paneMillis)
+     */
+    private static final class Pane {
+        long id = Long.MIN_VALUE;
+        StatsAccumulator stats = new StatsAccumulator();
+    }
+
+    private final long paneMillis;
+    private final long horizonMillis;
+    private final Pane[] panes;
+    private final AtomicLong latestPane = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param paneMillis    тривалість панелі (точність вікон)
+     * @param horizonMillis найдовше вікно, кратне paneMillis
+     */
+    public TimeWindowStats(long paneMillis, long horizonMillis) {
+        if (paneMillis <= 0 || horizonMillis < paneMillis || horizonMillis % paneMillis != 0) {
+            throw new IllegalArgumentException("paneMillis=" + paneMillis + ", horizonMillis=" + horizonMillis);
+        }
+        this.paneMillis = paneMillis;
+        this.horizonMillis = horizonMillis;
+        // Додаткова панель для поточного, ще не завершеного інтервалу
+        this.panes = new Pane[Math.toIntExact(horizonMillis / paneMillis + 1)];
+        for (int i = 0; i < panes.length; i++) {
+            panes[i] = new Pane();
+        }
+    }
+
+    public long getPaneMillis() { return paneMillis; }
+    public long getHorizonMillis() { return horizonMillis; }
+
+    /**
+     * @return false, якщо значення старіше за горизонт і тому відкинуте
+     */
+    public boolean add(double value, long timestampMillis) {
+        long id = Math.floorDiv(timestampMillis, paneMillis);
+        long latest = latestPane.get();
+        if (id > latest) {
+            latest = latestPane.accumulateAndGet(id, Math::max);
+        }
+        if (id <= latest - panes.length) {
+            return false;
+        }
+        Pane pane = panes[(int) Math.floorMod(id, (long) panes.length)];
+        synchronized (pane) {
+            if (pane.id > id) {
+                return false;
+            }
+            if (pane.id < id) {
+                pane.id = id;
+                pane.stats = new StatsAccumulator();
+            }
+            pane.stats.add(value);
+        }
+        return true;
+    }
+
+    /**
+     * Статистика за останні windowMillis, що закінчуються в nowMillis.
+     * Межі вікна вирівнюються по панелях, поточна незавершена панель входить у вікно.
+     */
+    public DataStats sliding(long windowMillis, long nowMillis) {
+        checkWindow(windowMillis);
+        long last = Math.floorDiv(nowMillis, paneMillis);
+        long windowPanes = (windowMillis + paneMillis - 1) / paneMillis;
+        return merge(last - windowPanes + 1, last).toStats();
+    }
+
+    /**
+     * Вікна тривалістю windowMillis, вирівняні по кратних windowMillis моментах:
+     * початок вікна -> статистика. Повертаються всі вікна в межах горизонту до nowMillis,
+     * останнє з них може бути ще не завершеним.
+     */
+    public SortedMap<Long, DataStats> tumbling(long windowMillis, long nowMillis) {
+        checkWindow(windowMillis);
+        if (windowMillis % paneMillis != 0) {
+            throw new IllegalArgumentException("Window must be a multiple of " + paneMillis + " ms: " + windowMillis);
+        }
+        long panesPerWindow = windowMillis / paneMillis;
+        long last = Math.floorDiv(nowMillis, paneMillis);
+        long oldest = last - panes.length + 1;
+        long start = Math.floorDiv(oldest, panesPerWindow) * panesPerWindow;
+        if (start < oldest) {
+            start += panesPerWindow; // Частину цього вікна вже витіснено
+        }
+        SortedMap<Long, DataStats> windows = new TreeMap<>();
+        for (long id = start; id <= last; id += panesPerWindow) {
+            windows.put(id * paneMillis, merge(id, Math.min(last, id + panesPerWindow - 1)).toStats());
+        }
+        return windows;
+    }
+
+    private void checkWindow(long windowMillis) {
+        if (windowMillis <= 0 || windowMillis > horizonMillis) {
+            throw new IllegalArgumentException("Window must be in (0, " + horizonMillis + "] ms: " + windowMillis);
+        }
+    }
+
+    private StatsAccumulator merge(long fromPane, long toPane) {
+        StatsAccumulator total = new StatsAccumulator();
+        for (long id = Math.max(fromPane, toPane - panes.length + 1); id <= toPane; id++) {
+            Pane pane = panes[(int) Math.floorMod(id, (long) panes.length)];
+            synchronized (pane) {
+                if (pane.id == id) {
+                    total.merge(pane.stats);
+                }
+            }
+        }
+        return total;
+    }
+}
+
+/**
+ * Режим виконання запиту
+ */
+enum QueryMode {
+    /** Точна відповідь повним проходом по даних */
+    EXACT,
+    /** Наближена відповідь за вибіркою та скетчами з оцінкою похибки */
+    APPROXIMATE
+}
+
+/**
+ * Результат запиту з межею похибки (±error, для вибіркових оцінок — 95% довірчий інтервал)
+ * та часом виконання.
+ */
+final class Estimate {
+    private final double value;
+    private final double error;
+    private final boolean exact;
+    private final long elapsedNanos;
+
+    Estimate(double value, double error, boolean exact, long elapsedNanos) {
+        this.value = value;
+        this.error = error;
+        this.exact = exact;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    static Estimate exact(double value, long startNanos) {
+        return new Estimate(value, 0, true, System.nanoTime() - startNanos);
+    }
+
+    static Estimate approximate(double value, double error, long startNanos) {
+        return new Estimate(value, error, false, System.nanoTime() - startNanos);
+    }
+
+    public double getValue() { return value; }
+    public double getError() { return error; }
+    public double getLower() { return value - error; }
+    public double getUpper() { return value + error; }
+    public boolean isExact() { return exact; }
+    public long getElapsedMicros() { return TimeUnit.NANOSECONDS.toMicros(elapsedNanos); }
+
+    @Override
+    public String toString() {
+        return (exact ? String.valueOf(value) : value + " ± " + error) + " (" + getElapsedMicros() + " мкс)";
+    }
+}
+
+/**
+ * Скетч квантилів з гарантованою відносною похибкою (за схемою DDSketch):
+ * значення потрапляють у логарифмічні кошики з основою gamma = (1 + a) / (1 - a),
+ * тому оцінка будь-якого квантиля відрізняється від точного значення не більше ніж на a відносно.
+ * Скетчі з однаковою точністю об'єднуються.
+ */
+class QuantileSketch {
+    private static final double MIN_INDEXABLE = 1e-300;
+
+    private final double relativeAccuracy;
+    private final double logGamma;
+    private final BucketStore positive = new BucketStore();
+    private final BucketStore negative = new BucketStore();
+    private long zeroCount;
+    private long count;
+
+    /**
+     * Щільний масив лічильників кошиків, що розширюється в обидва боки
+     */
+    private static final class BucketStore {
+        long[] counts = new long[0];
+        int offset;
+
+        void add(int index, long n) {
+            if (counts.length == 0) {
+                counts = new long[64];
+                offset = index - 32;
+            } else if (index < offset || index >= offset + counts.length) {
+                int low = Math.min(offset, index), high = Math.max(offset + counts.length - 1, index);
+                int length = Math.max(counts.length * 2, high - low + 1);
+                int newOffset = index < offset ? high - length + 1 : low;
+                long[] next = new long[length];
+                System.arraycopy(counts, 0, next, offset - newOffset, counts.length);
+                counts = next;
+                offset = newOffset;
+            }
+            counts[index - offset] += n;
+        }
+
+        void merge(BucketStore other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("relativeAccuracy must be in (0, 1): " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        double magnitude = Math.abs(value);
+        if (magnitude < MIN_INDEXABLE) {
+            zeroCount++;
+        } else {
+            int index = (int) Math.ceil(Math.log(Math.min(magnitude, Double.MAX_VALUE)) / logGamma);
+            (value > 0 ? positive : negative).add(index, 1);
+        }
+        count++;
+    }
+
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Sketch accuracy mismatch");
+        }
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        return this;
+    }
+
+    /**
+     * Оцінка квантиля q з [0, 1] (q = 0.5 — медіана)
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.max(0, (long) Math.ceil(Math.min(1, Math.max(0, q)) * count) - 1);
+        long seen = 0;
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += negative.counts[i];
+            if (seen > rank) {
+                return -bucketValue(negative.offset + i);
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (int i = 0; i < positive.counts.length; i++) {
+            seen += positive.counts[i];
+            if (seen > rank) {
+                return bucketValue(positive.offset + i);
+            }
+        }
+        return Double.NaN;
+    }
+
+    private double bucketValue(int index) {
+        double gamma = Math.exp(logGamma);
+        return Math.min(Double.MAX_VALUE, Math.exp(index * logGamma + Math.log(2 / (gamma + 1))));
+    }
+}
+
+/**
+ * Оцінка кількості різних значень (HyperLogLog, 2^14 регістрів, стандартна похибка ~0.8%).
+ * Скетчі об'єднуються взяттям максимуму по регістрах.
+ */
+class HyperLogLog {
+    private static final int PRECISION = 14;
+    private static final int REGISTERS = 1 << PRECISION;
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    public void add(double value) {
+        long hash = mix(Double.doubleToLongBits(value));
+        int index = (int) (hash >>> (64 - PRECISION));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public HyperLogLog merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+        }
+        return this;
+    }
+
+    public double estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            return REGISTERS * Math.log((double) REGISTERS / zeros); // Поправка для малих кількостей
+        }
+        return estimate;
+    }
+
+    public static double standardError() {
+        return 1.04 / Math.sqrt(REGISTERS);
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
+
+/**
+ * Наближена статистика, що підтримується при додаванні значень: рівномірна вибірка
+ * (reservoir sampling), скетч квантилів і HyperLogLog. Як і в RunningStats, стан розбитий
+ * на смуги за потоками. Кожна смуга тримає вибірку повного розміру, а запит зводить їх
+ * в одну рівномірну вибірку з sampleSize значень, тож точність не залежить від того,
+ * скільки потоків додавали дані.
+ */
+class ApproximateStats {
+    private static final double Z_95 = 1.96;
+
+    private final int sampleSize;
+    private final Stripe[] stripes;
+
+    private static final class Stripe {
+        double[] reservoir;
+        final SplittableRandom random = new SplittableRandom();
+        final QuantileSketch quantiles;
+        final HyperLogLog distinct = new HyperLogLog();
+        int filled;
+        long count;
+
+        Stripe(int sampleSize, double relativeAccuracy) {
+            reservoir = new double[Math.min(sampleSize, 64)]; // Росте до sampleSize лише в активних смугах
+            quantiles = new QuantileSketch(relativeAccuracy);
+        }
+    }
+
+    /**
+     * Рівномірна вибірка з усіх значень і кількість значень, з яких її зроблено
+     */
+    private static final class Sample {
+        final double[] values;
+        final long population;
+
+        Sample(double[] values, long population) {
+            this.values = values;
+            this.population = population;
+        }
+
+        /**
+         * Поправка на скінченну сукупність: якщо у вибірці всі значення, похибки немає
+         */
+        double finiteCorrection() {
+            return 1.0 - (double) values.length / population;
+        }
+    }
+
+    /**
+     * @param sampleSize       загальний розмір вибірки
+     * @param relativeAccuracy відносна похибка квантилів
+     */
+    public ApproximateStats(int sampleSize, double relativeAccuracy) {
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("sampleSize must be positive: " + sampleSize);
+        }
+        this.sampleSize = sampleSize;
+        int count = Striping.COUNT;
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(sampleSize, relativeAccuracy);
+        }
+    }
+
+    public void add(double value) {
+        Stripe stripe = stripes[Striping.current()];
+        synchronized (stripe) {
+            stripe.count++;
+            if (stripe.filled < sampleSize) {
+                if (stripe.filled == stripe.reservoir.length) {
+                    stripe.reservoir = Arrays.copyOf(stripe.reservoir, Math.min(sampleSize, 2 * stripe.filled));
+                }
+                stripe.reservoir[stripe.filled++] = value;
+            } else {
+                long slot = stripe.random.nextLong(stripe.count);
+                if (slot < sampleSize) {
+                    stripe.reservoir[(int) slot] = value;
+                }
+            }
+            stripe.quantiles.add(value);
+            stripe.distinct.add(value);
+        }
+    }
+
+    /**
+     * Середнє значення за вибіркою
+     */
+    public Estimate mean() {
+        long start = System.nanoTime();
+        Sample sample = sample();
+        int n = sample.values.length;
+        if (n == 0) {
+            return Estimate.approximate(Double.NaN, Double.NaN, start);
+        }
+        StatsAccumulator accumulator = new StatsAccumulator();
+        for (double value : sample.values) {
+            accumulator.add(value);
+        }
+        DataStats stats = accumulator.toStats();
+        double sampleVariance = n > 1 ? stats.getVariance() * n / (n - 1) : 0;
+        double error = Z_95 * Math.sqrt(sampleVariance / n * sample.finiteCorrection());
+        return Estimate.approximate(stats.getMean(), error, start);
+    }
+
+    /**
+     * Кількість значень > threshold за часткою відповідних значень у вибірці
+     */
+    public Estimate countGreaterThan(double threshold) {
+        long start = System.nanoTime();
+        Sample sample = sample();
+        int n = sample.values.length;
+        if (n == 0) {
+            return Estimate.approximate(0, 0, start);
+        }
+        int matches = 0;
+        for (double value : sample.values) {
+            if (value > threshold) {
+                matches++;
+            }
+        }
+        double fraction = (double) matches / n;
+        double error = Z_95 * sample.population * Math.sqrt(fraction * (1 - fraction) / n * sample.finiteCorrection());
+        return Estimate.approximate(Math.round(sample.population * fraction), error, start);
+    }
+
+    /**
+     * Відповідні критерію значення з вибірки
+     */
+    public double[] sampleGreaterThan(double threshold) {
+        double[] values = sample().values;
+        double[] matches = new double[values.length];
+        int count = 0;
+        for (double value : values) {
+            if (value > threshold) {
+                matches[count++] = value;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Зведення вибірок смуг в одну рівномірну вибірку з min(sampleSize, усього значень) елементів.
+     * Кожне місце вибірки дістається смузі з імовірністю, пропорційною кількості ще не вибраних
+     * значень смуги, а значення береться з вибірки смуги без повторень. Вибірка смуги має
+     * min(count, sampleSize) значень, тому її завжди вистачає.
+     */
+    private Sample sample() {
+        double[][] reservoirs = new double[stripes.length][];
+        long[] remaining = new long[stripes.length];
+        long population = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[i];
+            synchronized (stripe) {
+                reservoirs[i] = Arrays.copyOf(stripe.reservoir, stripe.filled);
+                remaining[i] = stripe.count;
+            }
+            population += remaining[i];
+        }
+        double[] values = new double[(int) Math.min(sampleSize, population)];
+        int[] taken = new int[stripes.length];
+        SplittableRandom random = new SplittableRandom();
+        long left = population;
+        for (int j = 0; j < values.length; j++) {
+            long position = random.nextLong(left--);
+            int i = 0;
+            while (position >= remaining[i]) {
+                position -= remaining[i++];
+            }
+            remaining[i]--;
+            double[] reservoir = reservoirs[i];
+            int next = taken[i]++;
+            int pick = next + random.nextInt(reservoir.length - next);
+            values[j] = reservoir[pick];
+            reservoir[pick] = reservoir[next];
+        }
+        return new Sample(values, population);
+    }
+
+    /**
+     * Квантиль q з [0, 1]; похибка — гарантована відносна точність скетчу
+     */
+    public Estimate quantile(double q) {
+        long start = System.nanoTime();
+        QuantileSketch total = null;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                if (total == null) {
+                    total = new QuantileSketch(stripe.quantiles.getRelativeAccuracy());
+                }
+                total.merge(stripe.quantiles);
+            }
+        }
+        double value = total.quantile(q);
+        return Estimate.approximate(value, Math.abs(value) * total.getRelativeAccuracy(), start);
+    }
+
+    /**
+     * Кількість різних значень
+     */
+    public Estimate distinct() {
+        long start = System.nanoTime();
+        HyperLogLog total = new HyperLogLog();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                total.merge(stripe.distinct);
+            }
+        }
+        double estimate = Math.round(total.estimate());
+        return Estimate.approximate(estimate, Z_95 * HyperLogLog.standardError() * estimate, start);
+    }
+}
+
+/**
+ * Незмінний знімок даних у вигляді набору сторінок.
+ * Усі операції працюють з примітивами і паралеляться по сторінках.
+ * Значення йдуть у порядку зберігання колонок, з яких зроблено знімок
+ * (для StripedDoubleStore — у порядку додавання в межах кожного потоку).
+ */
+class DataSnapshot {
+    private final double[][] pages;
+    private final int[] lengths;
+    private final int size;
+
+    DataSnapshot(double[][] pages, int[] lengths, int size) {
+        this.pages = pages;
+        this.lengths = lengths;
+        this.size = size;
+    }
+
+    /**
+     * Об'єднання знімків кількох колонок в один без копіювання значень
+     */
+    static DataSnapshot concat(DataSnapshot[] parts) {
+        int pageCount = 0;
+        int total = 0;
+        for (DataSnapshot part : parts) {
+            pageCount += part.pages.length;
+            total += part.size;
+        }
+        double[][] pages = new double[pageCount][];
+        int[] lengths = new int[pageCount];
+        int offset = 0;
+        for (DataSnapshot part : parts) {
+            System.arraycopy(part.pages, 0, pages, offset, part.pages.length);
+            System.arraycopy(part.lengths, 0, lengths, offset, part.lengths.length);
+            offset += part.pages.length;
+        }
+        return new DataSnapshot(pages, lengths, total);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        for (int i = 0; i < pages.length; i++) {
+            if (index < lengths[i]) {
+                return pages[i][index];
+            }
+            index -= lengths[i];
+        }
+        throw new IndexOutOfBoundsException();
+    }
+
+    public double min() {
+        return pageStream().mapToDouble(this::pageMin).min().orElse(Double.NaN);
+    }
+
+    public double max() {
+        return pageStream().mapToDouble(this::pageMax).max().orElse(Double.NaN);
+    }
+
+    public double sum() {
+        return pageStream().mapToDouble(this::pageSum).sum();
+    }
+
+    public double average() {
+        return size == 0 ? Double.NaN : sum() / size;
+    }
+
+    /**
+     * Обчислення всієї статистики за один паралельний прохід
+     */
+    public DataStats summarize() {
+        return pageStream()
+                .mapToObj(this::pageStats)
+                .collect(StatsAccumulator::new, StatsAccumulator::merge, StatsAccumulator::merge)
+                .toStats();
+    }
+
+    /**
+     * Значення, більші за поріг, у порядку зберігання
+     */
+    public double[] filterGreaterThan(double threshold) {
+        return filter(value -> value > threshold);
+    }
+
+    /**
+     * Значення, що задовольняють умову, у порядку зберігання
+     */
+    public double[] filter(DoublePredicate predicate) {
+        double[][] parts = pageStream().mapToObj(page -> pageFilter(page, predicate)).toArray(double[][]::new);
+        int total = 0;
+        for (double[] part : parts) {
+            total += part.length;
+        }
+        double[] result = new double[total];
+        int offset = 0;
+        for (double[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+
+    /**
+     * Копія значень з індексами [from, to)
+     */
+    public double[] copyRange(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", size: " + size);
+        }
+        double[] result = new double[to - from];
+        int offset = 0;
+        int pageStart = 0;
+        for (int i = 0; i < pages.length && offset < result.length; i++) {
+            int pageEnd = pageStart + lengths[i];
+            if (pageEnd > from) {
+                int start = Math.max(from, pageStart) - pageStart;
+                int length = Math.min(to, pageEnd) - pageStart - start;
+                System.arraycopy(pages[i], start, result, offset, length);
+                offset += length;
+            }
+            pageStart = pageEnd;
+        }
+        return result;
+    }
+
+    /**
+     * Кількість значень, що задовольняють умову, повним паралельним проходом
+     */
+    public long count(DoublePredicate predicate) {
+        return pageStream().mapToLong(page -> {
+            double[] values = pages[page];
+            long count = 0;
+            for (int i = 0, n = lengths[page]; i < n; i++) {
+                if (predicate.test(values[i])) {
+                    count++;
+                }
+            }
+            return count;
+        }).sum();
+    }
+
+    public double[] toArray() {
+        double[] result = new double[size];
+        int offset = 0;
+        for (int i = 0; i < pages.length; i++) {
+            System.arraycopy(pages[i], 0, result, offset, lengths[i]);
+            offset += lengths[i];
+        }
+        return result;
+    }
+
+    /**
+     * Послідовний обхід усіх значень у порядку зберігання, сторінка за сторінкою
+     */
+    public void forEach(DoubleConsumer action) {
+        for (int i = 0; i < pages.length; i++) {
+            double[] values = pages[i];
+            for (int j = 0, n = lengths[i]; j < n; j++) {
+                action.accept(values[j]);
+            }
+        }
+    }
+
+    private IntStream pageStream() {
+        return IntStream.range(0, pages.length).parallel();
+    }
+
+    private double pageMin(int page) {
+        double[] values = pages[page];
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0, n = lengths[page]; i < n; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    private double pageMax(int page) {
+        double[] values = pages[page];
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0, n = lengths[page]; i < n; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+    private double pageSum(int page) {
+        double[] values = pages[page];
+        double sum = 0;
+        for (int i = 0, n = lengths[page]; i < n; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    private StatsAccumulator pageStats(int page) {
+        double[] values = pages[page];
+        StatsAccumulator accumulator = new StatsAccumulator();
+        for (int i = 0, n = lengths[page]; i < n; i++) {
+            accumulator.add(values[i]);
+        }
+        return accumulator;
+    }
+
+    private double[] pageFilter(int page, DoublePredicate predicate) {
+        double[] values = pages[page];
+        int n = lengths[page];
+        double[] buffer = new double[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (predicate.test(values[i])) {
+                buffer[count++] = values[i];
+            }
+        }
+        return Arrays.copyOf(buffer, count);
+    }
+}
+
+/**
+ * Вторинний індекс: відсортований примітивний масив значень.
+ * Нові значення додаються злиттям відсортованого "хвоста" при наступному запиті,
+ * тому порогові та діапазонні запити виконуються за O(log n + k).
+ * Значення NaN до індексу не потрапляють.
+ */
+class SortedDoubleIndex {
+    private final StripedDoubleStore source;
+    private volatile double[] sorted = new double[0];
+    private volatile int indexedCount;
+    private final int[] indexedPerStripe;
+
+    SortedDoubleIndex(StripedDoubleStore source) {
+        this.source = source;
+        this.indexedPerStripe = new int[source.stripes().length];
+    }
+
+    /**
+     * Кількість значень > threshold (без виділення пам'яті, якщо нових даних немає)
+     */
+    public int countGreaterThan(double threshold) {
+        double[] values = refresh();
+        return values.length - upperBound(values, threshold);
+    }
+
+    /**
+     * Кількість значень < threshold
+     */
+    public int countLessThan(double threshold) {
+        return lowerBound(refresh(), threshold);
+    }
+
+    /**
+     * Кількість значень у діапазоні [from, to)
+     */
+    public int countInRange(double from, double to) {
+        double[] values = refresh();
+        return Math.max(0, lowerBound(values, to) - lowerBound(values, from));
+    }
+
+    /**
+     * Значення > threshold у порядку зростання
+     */
+    public double[] greaterThan(double threshold) {
+        double[] values = refresh();
+        return Arrays.copyOfRange(values, upperBound(values, threshold), values.length);
+    }
+
+    /**
+     * Значення < threshold у порядку зростання
+     */
+    public double[] lessThan(double threshold) {
+        double[] values = refresh();
+        return Arrays.copyOfRange(values, 0, lowerBound(values, threshold));
+    }
+
+    /**
+     * Значення з діапазону [from, to) у порядку зростання
+     */
+    public double[] inRange(double from, double to) {
+        double[] values = refresh();
+        int start = lowerBound(values, from);
+        return Arrays.copyOfRange(values, start, Math.max(start, lowerBound(values, to)));
+    }
+
+    /**
+     * Злиття значень, доданих після останнього запиту
+     */
+    private double[] refresh() {
+        // indexedCount записується після sorted, тому читається першим: масив не старіший за лічильник
+        int indexed = indexedCount;
+        double[] values = sorted;
+        if (source.size() == indexed) {
+            return values;
+        }
+        synchronized (this) {
+            DoubleColumn[] stripes = source.stripes();
+            DataSnapshot[] tails = new DataSnapshot[stripes.length];
+            int tailSize = 0;
+            for (int i = 0; i < stripes.length; i++) {
+                tails[i] = stripes[i].snapshot();
+                tailSize += tails[i].size() - indexedPerStripe[i];
+            }
+            if (tailSize == 0) {
+                return sorted;
+            }
+            double[] tail = new double[tailSize];
+            int count = 0;
+            int total = 0;
+            for (int i = 0; i < stripes.length; i++) {
+                for (double value : tails[i].copyRange(indexedPerStripe[i], tails[i].size())) {
+                    if (!Double.isNaN(value)) {
+                        tail[count++] = value;
+                    }
+                }
+                indexedPerStripe[i] = tails[i].size();
+                total += tails[i].size();
+            }
+            Arrays.sort(tail, 0, count);
+            sorted = merge(sorted, tail, count);
+            indexedCount = total;
+            return sorted;
+        }
+    }
+
+    private static double[] merge(double[] left, double[] right, int rightLength) {
+        double[] result = new double[left.length + rightLength];
+        int i = 0, j = 0, k = 0;
+        while (i < left.length && j < rightLength) {
+            result[k++] = left[i] <= right[j] ? left[i++] : right[j++];
+        }
+        while (i < left.length) {
+            result[k++] = left[i++];
+        }
+        while (j < rightLength) {
+            result[k++] = right[j++];
+        }
+        return result;
+    }
+
+    /**
+     * Перший індекс зі значенням >= key
+     */
+    private static int lowerBound(double[] values, double key) {
+        int low = 0, high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Перший індекс зі значенням > key
+     */
+    private static int upperBound(double[] values, double key) {
+        int low = 0, high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
+
+/**
+ * Гістограма тривалостей у наносекундах з логарифмічно-лінійними кошиками (у стилі HdrHistogram),
+ * відносна похибка перцентилів не перевищує 1/64. Запис з будь-якої кількості потоків
+ * виконується атомарними інкрементами без виділення пам'яті.
+ */
+class LatencyHistogram {
+    private static final int SIGNIFICANT_BITS = 7;
+    private static final int HALF_BUCKET = 1 << (SIGNIFICANT_BITS - 1);
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SIGNIFICANT_BITS + 2) * HALF_BUCKET);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        int bucket = Math.max(0, 64 - Long.numberOfLeadingZeros(nanos) - SIGNIFICANT_BITS);
+        counts.incrementAndGet(bucket * HALF_BUCKET + (int) (nanos >>> bucket));
+        count.increment();
+        sum.add(nanos);
+        if (nanos > max.get()) {
+            max.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Верхня межа кошика, до якого входить percentile відсотків записаних значень
+     */
+    public long valueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                if (i < 2 * HALF_BUCKET) {
+                    return i;
+                }
+                int bucket = i / HALF_BUCKET - 1;
+                return Math.min(getMax(), ((i - (long) bucket * HALF_BUCKET + 1) << bucket) - 1);
+            }
+        }
+        return getMax();
+    }
+}
+
+/**
+ * Набір іменованих метрик одного компонента: датчики, лічильники, швидкості та гістограми тривалостей.
+ * Метрики доступні як плоский набір значень, текст або JSON, через JMX (DynamicMBean)
+ * і періодичний вивід.
+ */
+class Metrics {
+    private static final ScheduledExecutorService REPORTER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metrics-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String type;
+    private final String name;
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, RateMeter> rates = new ConcurrentSkipListMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+
+    /**
+     * Швидкість зростання лічильника за секунду, перерахована не частіше разу на секунду
+     */
+    private static final class RateMeter {
+        private final LongSupplier total;
+        private long lastNanos = System.nanoTime();
+        private long lastTotal;
+        private double perSecond;
+
+        RateMeter(LongSupplier total) {
+            this.total = total;
+            this.lastTotal = total.getAsLong();
+        }
+
+        synchronized double perSecond() {
+            long now = System.nanoTime();
+            if (now - lastNanos >= TimeUnit.SECONDS.toNanos(1)) {
+                long current = total.getAsLong();
+                perSecond = (current - lastTotal) * 1e9 / (now - lastNanos);
+                lastTotal = current;
+                lastNanos = now;
+            }
+            return perSecond;
+        }
+    }
+
+    public Metrics(String type, String name) {
+        this.type = type;
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void gauge(String metric, LongSupplier value) {
+        gauges.put(metric, value);
+    }
+
+    public LongAdder counter(String metric) {
+        return counters.computeIfAbsent(metric, key -> new LongAdder());
+    }
+
+    public void rate(String metric, LongSupplier total) {
+        rates.put(metric, new RateMeter(total));
+    }
+
+    public LatencyHistogram histogram(String metric) {
+        return histograms.computeIfAbsent(metric, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Поточні значення всіх метрик; тривалості в наносекундах
+     */
+    public Map<String, Number> values() {
+        Map<String, Number> values = new TreeMap<>();
+        gauges.forEach((metric, gauge) -> values.put(metric, gauge.getAsLong()));
+        counters.forEach((metric, counter) -> values.put(metric, counter.sum()));
+        rates.forEach((metric, rate) -> values.put(metric, rate.perSecond()));
+        histograms.forEach((metric, histogram) -> {
+            values.put(metric + ".count", histogram.getCount());
+            values.put(metric + ".mean", histogram.getMean());
+            values.put(metric + ".p50", histogram.valueAtPercentile(50));
+            values.put(metric + ".p90", histogram.valueAtPercentile(90));
+            values.put(metric + ".p99", histogram.valueAtPercentile(99));
+            values.put(metric + ".p999", histogram.valueAtPercentile(99.9));
+            values.put(metric + ".max", histogram.getMax());
+        });
+        return values;
+    }
+
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        values().forEach((metric, value) -> text.append(type).append('.').append(name).append('.')
+                .append(metric).append(' ').append(value).append(System.lineSeparator()));
+        return text.toString();
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"type\": \"").append(type).append("\", \"name\": \"").append(name)
+                .append("\", \"timestamp\": ").append(System.currentTimeMillis()).append(", \"values\": {");
+        String separator = "";
+        for (Map.Entry<String, Number> value : values().entrySet()) {
+            double number = value.getValue().doubleValue();
+            json.append(separator).append('"').append(value.getKey()).append("\": ")
+                    .append(Double.isFinite(number) ? value.getValue().toString() : "null");
+            separator = ", ";
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Реєстрація в платформному MBeanServer під іменем praktika:type=...,name=...
+     */
+    public ObjectName registerMBean() throws JMException {
+        ObjectName objectName = new ObjectName("praktika:type=" + type + ",name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), objectName);
+        return objectName;
+    }
+
+    /**
+     * Періодичний вивід метрик текстом або JSON; зупиняється скасуванням результату
+     */
+    public ScheduledFuture<?> startReporter(long period, TimeUnit unit, boolean json, PrintStream out) {
+        return REPORTER.scheduleAtFixedRate(() -> out.println(json ? toJson() : toText()), period, period, unit);
+    }
+
+    /**
+     * Атрибути MBean — поточні значення метрик, лише для читання
+     */
+    private final class MetricsMBean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Number value = values().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Number> values = values();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                if (values.containsKey(attribute)) {
+                    list.add(new Attribute(attribute, values.get(attribute)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            values().forEach((metric, value) -> attributes.add(
+                    new MBeanAttributeInfo(metric, value.getClass().getName(), metric, true, false, false)));
+            return new MBeanInfo(Metrics.class.getName(), "Метрики " + type + " " + name,
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
+
+/**
+ * Подія JFR: виконання запиту ComputationManager
+ */
+@Name("praktika.Query")
+@Label("Computation Query")
+@Category("Praktika")
+class QueryEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Dataset Size")
+    long datasetSize;
+}
+
+/**
+ * Подія JFR: виконання завдання з TaskQueue
+ */
+@Name("praktika.TaskExecution")
+@Label("Task Execution")
+@Category("Praktika")
+@Description("Виконання завдання разом з часом очікування в черзі")
+class TaskExecutionEvent extends Event {
+    @Label("Task")
+    String task;
+
+    @Label("Queue Wait")
+    @Timespan
+    long queueWait;
+
+    @Label("Failed")
+    boolean failed;
+}
+
+/**
+ * Спільні операції менеджерів обчислень
+ */
+interface ComputationEngine {
+    void addData(double value);
+    double findMin();
+    double findMax();
+    double computeAverage();
+    DataStats summarize();
+    List<Double> filterByCriterion(double threshold);
+
+    /**
+     * Версія даних: змінюється при кожному додаванні значення
+     */
+    long dataVersion();
+}
 
 /**
  * Основний клас для керування обчисленнями
  */
-class ComputationManager {
-    private List<Double> data = Collections.synchronizedList(new ArrayList<>());
+class ComputationManager implements ComputationEngine {
+    private final StripedDoubleStore data = new StripedDoubleStore();
+    private final RunningStats runningStats;
+    private volatile SortedDoubleIndex index;
+    private volatile TimeWindowStats[] windows = new TimeWindowStats[0];
+    private volatile ApproximateStats approximate;
+    private final Metrics metrics = new Metrics("ComputationManager", Integer.toHexString(System.identityHashCode(this)));
+    private final LatencyHistogram findMinLatency = metrics.histogram("findMin");
+    private final LatencyHistogram findMaxLatency = metrics.histogram("findMax");
+    private final LatencyHistogram averageLatency = metrics.histogram("computeAverage");
+    private final LatencyHistogram filterLatency = metrics.histogram("filterByCriterion");
+    private final LatencyHistogram summarizeLatency = metrics.histogram("summarize");
+
+    public ComputationManager() {
+        this(false);
+    }
+
+    /**
+     * @param incrementalStats підтримувати статистику при додаванні, щоб запити виконувались за O(1)
+     */
+    public ComputationManager(boolean incrementalStats) {
+        this.runningStats = incrementalStats ? new RunningStats() : null;
+        metrics.gauge("datasetSize", data::size);
+        metrics.rate("ingestionRate", data::size);
+    }
+
+    /**
+     * Метрики: розмір даних, швидкість додавання та тривалість запитів
+     */
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    private QueryEvent beginQuery() {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        return event;
+    }
+
+    private void endQuery(QueryEvent event, String operation, LatencyHistogram latency, long start) {
+        latency.record(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.datasetSize = data.size();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void addData(double value) {
+        record(value);
+        TimeWindowStats[] current = windows;
+        if (current.length > 0) {
+            long now = System.currentTimeMillis();
+            for (TimeWindowStats window : current) {
+                window.add(value, now);
+            }
+        }
+    }
+
+    /**
+     * Додавання виміру з часовою міткою у віконному режимі.
+     * Як і addData(double), значення зберігається в основному сховищі, статистиці, індексі
+     * та скетчах і змінює dataVersion; у вікна воно потрапляє за власною міткою часу.
+     * @return false, якщо значення старіше за горизонт усіх рівнів і у вікна не потрапило
+     */
+    public boolean addData(double value, long timestampMillis) {
+        TimeWindowStats[] current = windows;
+        if (current.length == 0) {
+            throw new IllegalStateException("Windowing is not enabled");
+        }
+        record(value);
+        boolean accepted = false;
+        for (TimeWindowStats window : current) {
+            accepted |= window.add(value, timestampMillis);
+        }
+        return accepted;
+    }
+
+    private void record(double value) {
+        data.append(value);
+        if (runningStats != null) {
+            runningStats.add(value);
+        }
+        ApproximateStats sketches = approximate;
+        if (sketches != null) {
+            sketches.add(value);
+        }
+    }
+
+    /**
+     * Увімкнення віконної статистики з панелями paneMillis для вікон до horizonMillis.
+     * Ковзне вікно з n панелей охоплює від (n - 1) до n панелей, бо поточна панель ще не завершена,
+     * тому панелі мають бути значно дрібнішими за вікна (наприклад, 100 мс для секундного вікна).
+     * Повторні виклики додають рівні іншої роздільності; запит обирає найдрібніший рівень,
+     * що покриває вікно.
+     */
+    public synchronized void enableWindowing(long paneMillis, long horizonMillis) {
+        TimeWindowStats[] next = Arrays.copyOf(windows, windows.length + 1);
+        next[windows.length] = new TimeWindowStats(paneMillis, horizonMillis);
+        Arrays.sort(next, Comparator.comparingLong(TimeWindowStats::getPaneMillis));
+        windows = next;
+    }
+
+    public boolean isWindowed() {
+        return windows.length > 0;
+    }
+
+    /**
+     * Чи є рівень, що покриває вікно windowMillis (інакше windowStats кидає виняток)
+     */
+    public boolean coversWindow(long windowMillis) {
+        for (TimeWindowStats window : windows) {
+            if (window.getHorizonMillis() >= windowMillis) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Мінімум, максимум, кількість і середнє за останні windowMillis
+     */
+    public DataStats windowStats(long windowMillis) {
+        return windowStats(windowMillis, System.currentTimeMillis());
+    }
+
+    public DataStats windowStats(long windowMillis, long nowMillis) {
+        return windowLevel(windowMillis).sliding(windowMillis, nowMillis);
+    }
+
+    /**
+     * Статистика по послідовних фіксованих вікнах: початок вікна -> статистика
+     */
+    public SortedMap<Long, DataStats> tumblingWindows(long windowMillis, long nowMillis) {
+        return windowLevel(windowMillis).tumbling(windowMillis, nowMillis);
+    }
+
+    private TimeWindowStats windowLevel(long windowMillis) {
+        TimeWindowStats[] current = windows;
+        if (current.length == 0) {
+            throw new IllegalStateException("Windowing is not enabled");
+        }
+        TimeWindowStats covering = null;
+        for (TimeWindowStats window : current) {
+            if (window.getHorizonMillis() >= windowMillis) {
+                if (windowMillis % window.getPaneMillis() == 0) {
+                    return window;
+                }
+                if (covering == null) {
+                    covering = window;
+                }
+            }
+        }
+        if (covering == null) {
+            throw new IllegalArgumentException("No windowing level covers " + windowMillis + " ms");
+        }
+        return covering;
+    }
+
+    @Override
+    public long dataVersion() {
+        return data.size();
+    }
+
+    public boolean isIncremental() {
+        return runningStats != null;
+    }
+
+    /**
+     * Увімкнення відсортованого індексу для порогових і діапазонних запитів
+     */
+    public synchronized void enableIndex() {
+        if (index == null) {
+            index = new SortedDoubleIndex(data);
+        }
+    }
+
+    public boolean isIndexed() {
+        return index != null;
+    }
+
+    /**
+     * Увімкнення наближених запитів: вибірка на 10000 значень, квантилі з точністю 1%
+     */
+    public void enableApproximateQueries() {
+        enableApproximateQueries(10_000, 0.01);
+    }
+
+    /**
+     * Увімкнення наближених запитів. Вибірка та скетчі заповнюються вже доданими даними;
+     * значення, додані одночасно з увімкненням, можуть не потрапити до наближеної статистики.
+     */
+    public synchronized void enableApproximateQueries(int sampleSize, double relativeAccuracy) {
+        if (approximate == null) {
+            ApproximateStats sketches = new ApproximateStats(sampleSize, relativeAccuracy);
+            data.snapshot().forEach(sketches::add);
+            approximate = sketches;
+        }
+    }
+
+    public boolean isApproximate() {
+        return approximate != null;
+    }
+
+    private ApproximateStats approximation() {
+        ApproximateStats sketches = approximate;
+        if (sketches == null) {
+            throw new IllegalStateException("Approximate queries are not enabled");
+        }
+        return sketches;
+    }
+
+    /**
+     * Середнє значення: точне або оцінка за вибіркою
+     */
+    public Estimate computeAverage(QueryMode mode) {
+        if (mode == QueryMode.APPROXIMATE) {
+            return approximation().mean();
+        }
+        long start = System.nanoTime();
+        return Estimate.exact(computeAverage(), start);
+    }
+
+    /**
+     * Кількість значень > threshold: точна або оцінка за вибіркою
+     */
+    public Estimate countAbove(double threshold, QueryMode mode) {
+        if (mode == QueryMode.APPROXIMATE) {
+            return approximation().countGreaterThan(threshold);
+        }
+        long start = System.nanoTime();
+        return Estimate.exact(countAbove(threshold), start);
+    }
+
+    /**
+     * Відбір за критерієм; у наближеному режимі — лише відповідні значення з вибірки
+     */
+    public List<Double> filterByCriterion(double threshold, QueryMode mode) {
+        if (mode == QueryMode.EXACT) {
+            return filterByCriterion(threshold);
+        }
+        double[] values = approximation().sampleGreaterThan(threshold);
+        List<Double> result = new ArrayList<>(values.length);
+        for (double value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    /**
+     * Квантиль q з [0, 1] (0.5 — медіана, 0.95, 0.99)
+     */
+    public Estimate quantile(double q, QueryMode mode) {
+        if (mode == QueryMode.APPROXIMATE) {
+            return approximation().quantile(q);
+        }
+        long start = System.nanoTime();
+        double[] values = data.snapshot().toArray();
+        if (values.length == 0) {
+            return Estimate.exact(Double.NaN, start);
+        }
+        Arrays.parallelSort(values);
+        int nonNaN = values.length;
+        while (nonNaN > 0 && Double.isNaN(values[nonNaN - 1])) {
+            nonNaN--;
+        }
+        if (nonNaN == 0) {
+            return Estimate.exact(Double.NaN, start);
+        }
+        int rank = (int) Math.max(0, Math.ceil(Math.min(1, Math.max(0, q)) * nonNaN) - 1);
+        return Estimate.exact(values[rank], start);
+    }
+
+    /**
+     * Кількість різних значень
+     */
+    public Estimate countDistinct(QueryMode mode) {
+        if (mode == QueryMode.APPROXIMATE) {
+            return approximation().distinct();
+        }
+        long start = System.nanoTime();
+        double[] values = data.snapshot().toArray();
+        Arrays.parallelSort(values);
+        long distinct = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(values[i - 1])) {
+                distinct++;
+            }
+        }
+        return Estimate.exact(distinct, start);
+    }
+
+    /**
+     * Копія даних у вигляді списку в порядку зберігання (для сумісності; для великих обсягів краще snapshot())
+     */
+    public List<Double> getData() {
+        double[] values = data.snapshot().toArray();
+        List<Double> result = new ArrayList<>(values.length);
+        for (double value : values) {
+            result.add(value);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Узгоджений знімок даних без копіювання значень
+     */
+    public DataSnapshot snapshot() {
+        return data.snapshot();
+    }
+
+    /**
+     * Паралельний пошук мінімального значення
+     */
+    @Override
+    public double findMin() {
+        QueryEvent event = beginQuery();
+        long start = System.nanoTime();
+        try {
+            if (runningStats != null) {
+                return runningStats.snapshot().getMin();
+            }
+            return data.snapshot().min();
+        } finally {
+            endQuery(event, "findMin", findMinLatency, start);
+        }
+    }
+
+    /**
+     * Паралельний пошук максимального значення
+     */
+    @Override
+    public double findMax() {
+        QueryEvent event = beginQuery();
+        long start = System.nanoTime();
+        try {
+            if (runningStats != null) {
+                return runningStats.snapshot().getMax();
+            }
+            return data.snapshot().max();
+        } finally {
+            endQuery(event, "findMax", findMaxLatency, start);
+        }
+    }
+
+    /**
+     * Паралельне обчислення середнього значення
+     */
+    @Override
+    public double computeAverage() {
+        QueryEvent event = beginQuery();
+        long start = System.nanoTime();
+        try {
+            if (runningStats != null) {
+                return runningStats.snapshot().getMean();
+            }
+            return data.snapshot().average();
+        } finally {
+            endQuery(event, "computeAverage", averageLatency, start);
+        }
+    }
+
+    /**
+     * Мінімум, максимум, кількість, сума, середнє та дисперсія за один прохід по одному знімку
+     */
+    @Override
+    public DataStats summarize() {
+        QueryEvent event = beginQuery();
+        long start = System.nanoTime();
+        try {
+            if (runningStats != null) {
+                return runningStats.snapshot();
+            }
+            return data.snapshot().summarize();
+        } finally {
+            endQuery(event, "summarize", summarizeLatency, start);
+        }
+    }
 
-    public void addData(double value) {
-        data.add(value);
+    /**
+     * Паралельний відбір значень за критерієм (наприклад, більше 10)
+     */
+    @Override
+    public List<Double> filterByCriterion(double threshold) {
+        QueryEvent event = beginQuery();
+        long start = System.nanoTime();
+        try {
+            double[] values = filterValues(threshold);
+            List<Double> result = new ArrayList<>(values.length);
+            for (double value : values) {
+                result.add(value);
+            }
+            return result;
+        } finally {
+            endQuery(event, "filterByCriterion", filterLatency, start);
+        }
     }
 
-    public List<Double> getData() {
-        return data;
+    /**
+     * Відбір значень за критерієм без упаковки у Double, у порядку зберігання
+     */
+    public double[] filterValues(double threshold) {
+        return data.snapshot().filterGreaterThan(threshold);
     }
 
     /**
-     * Паралельний пошук мінімального значення
+     * Значення > threshold у порядку зростання; з увімкненим індексом — без повного проходу
      */
-    public double findMin() {
-        return data.parallelStream().min(Double::compareTo).orElse(Double.NaN);
+    public double[] sortedValuesAbove(double threshold) {
+        SortedDoubleIndex current = index;
+        if (current != null) {
+            return current.greaterThan(threshold);
+        }
+        double[] values = data.snapshot().filterGreaterThan(threshold);
+        Arrays.parallelSort(values);
+        return values;
     }
 
     /**
-     * Паралельний пошук максимального значення
+     * Кількість значень > threshold
      */
-    public double findMax() {
-        return data.parallelStream().max(Double::compareTo).orElse(Double.NaN);
+    public long countAbove(double threshold) {
+        SortedDoubleIndex current = index;
+        if (current != null) {
+            return current.countGreaterThan(threshold);
+        }
+        return data.snapshot().count(value -> value > threshold);
     }
 
     /**
-     * Паралельне обчислення середнього значення
+     * Кількість значень < threshold
+     */
+    public long countBelow(double threshold) {
+        SortedDoubleIndex current = index;
+        if (current != null) {
+            return current.countLessThan(threshold);
+        }
+        return data.snapshot().count(value -> value < threshold);
+    }
+
+    /**
+     * Кількість значень у діапазоні [from, to)
+     */
+    public long countInRange(double from, double to) {
+        SortedDoubleIndex current = index;
+        if (current != null) {
+            return current.countInRange(from, to);
+        }
+        return data.snapshot().count(value -> value >= from && value < to);
+    }
+
+    /**
+     * Значення з діапазону [from, to) у порядку зберігання
+     */
+    public double[] valuesInRange(double from, double to) {
+        return data.snapshot().filter(value -> value >= from && value < to);
+    }
+
+    /**
+     * Значення з діапазону [from, to) у порядку зростання; з увімкненим індексом — без повного проходу
+     */
+    public double[] sortedValuesInRange(double from, double to) {
+        SortedDoubleIndex current = index;
+        if (current != null) {
+            return current.inRange(from, to);
+        }
+        double[] values = valuesInRange(from, to);
+        Arrays.parallelSort(values);
+        return values;
+    }
+}
+
+/**
+ * Спосіб розподілу значень між шардами
+ */
+enum Partitioning {
+    /** По черзі: кожен потік-записувач обходить шарди циклічно */
+    ROUND_ROBIN,
+    /** За хешем значення: однакові значення завжди потрапляють в один шард */
+    HASH
+}
+
+/**
+ * Менеджер обчислень, розділений на незалежні шарди.
+ * Кожен шард має власне сховище і власний пул потоків: запити виконуються в усіх шардах
+ * паралельно (паралельні потоки даних шарду працюють у його пулі, а не в спільному ForkJoinPool),
+ * після чого часткові результати об'єднуються.
+ */
+class ShardedComputationManager implements ComputationEngine, AutoCloseable {
+    private final ComputationManager[] shards;
+    private final ForkJoinPool[] executors;
+    private final Partitioning partitioning;
+    private final ThreadLocal<int[]> nextShard = ThreadLocal.withInitial(
+            () -> new int[] {(int) Thread.currentThread().getId()});
+    private final Metrics metrics = new Metrics("ShardedComputationManager", Integer.toHexString(System.identityHashCode(this)));
+    private final LatencyHistogram findMinLatency = metrics.histogram("findMin");
+    private final LatencyHistogram findMaxLatency = metrics.histogram("findMax");
+    private final LatencyHistogram averageLatency = metrics.histogram("computeAverage");
+    private final LatencyHistogram filterLatency = metrics.histogram("filterByCriterion");
+    private final LatencyHistogram summarizeLatency = metrics.histogram("summarize");
+
+    public ShardedComputationManager() {
+        this(Runtime.getRuntime().availableProcessors(), Partitioning.ROUND_ROBIN, false);
+    }
+
+    /**
+     * @param shardCount       кількість шардів
+     * @param partitioning     розподіл значень між шардами
+     * @param incrementalStats підтримувати статистику шардів при додаванні
+     */
+    public ShardedComputationManager(int shardCount, Partitioning partitioning, boolean incrementalStats) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be positive: " + shardCount);
+        }
+        this.partitioning = partitioning;
+        this.shards = new ComputationManager[shardCount];
+        this.executors = new ForkJoinPool[shardCount];
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            int shard = i;
+            shards[i] = new ComputationManager(incrementalStats);
+            executors[i] = new ForkJoinPool(parallelism, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("shard-" + shard + "-worker-" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+        }
+        metrics.gauge("datasetSize", this::dataVersion);
+        metrics.rate("ingestionRate", this::dataVersion);
+    }
+
+    /**
+     * Метрики: розмір даних, швидкість додавання та тривалість запитів з урахуванням об'єднання шардів
      */
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    private QueryEvent beginQuery() {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        return event;
+    }
+
+    private void endQuery(QueryEvent event, String operation, LatencyHistogram latency, long start) {
+        latency.record(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.datasetSize = dataVersion();
+            event.commit();
+        }
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    public ComputationManager shard(int index) {
+        return shards[index];
+    }
+
+    @Override
+    public void addData(double value) {
+        int index;
+        if (partitioning == Partitioning.HASH) {
+            long bits = Double.doubleToLongBits(value) * 0x9E3779B97F4A7C15L;
+            index = (int) Math.floorMod(bits ^ (bits >>> 32), (long) shards.length);
+        } else {
+            int[] next = nextShard.get();
+            index = Math.floorMod(next[0]++, shards.length);
+        }
+        shards[index].addData(value);
+    }
+
+    @Override
+    public long dataVersion() {
+        long version = 0;
+        for (ComputationManager shard : shards) {
+            version += shard.dataVersion();
+        }
+        return version;
+    }
+
+    @Override
+    public double findMin() {
+        QueryEvent event = beginQuery();
+        long start = System.nanoTime();
+        try {
+            double min = Double.NaN;
+            for (double partial : query(ComputationManager::findMin)) {
+                if (!Double.isNaN(partial)) {
+                    min = Double.isNaN(min) ? partial : Math.min(min, partial);
+                }
+            }
+            return min;
+        } finally {
+            endQuery(event, "findMin", findMinLatency, start);
+        }
+    }
+
+    @Override
+    public double findMax() {
+        QueryEvent event = beginQuery();
+        long start = System.nanoTime();
+        try {
+            double max = Double.NaN;
+            for (double partial : query(ComputationManager::findMax)) {
+                if (!Double.isNaN(partial)) {
+                    max = Double.isNaN(max) ? partial : Math.max(max, partial);
+                }
+            }
+            return max;
+        } finally {
+            endQuery(event, "findMax", findMaxLatency, start);
+        }
+    }
+
+    @Override
     public double computeAverage() {
-        return data.parallelStream().mapToDouble(Double::doubleValue).average().orElse(Double.NaN);
+        QueryEvent event = beginQuery();
+        long start = System.nanoTime();
+        try {
+            double sum = 0;
+            long count = 0;
+            for (double[] partial : query(ShardedComputationManager::sumAndCount)) {
+                sum += partial[0];
+                count += (long) partial[1];
+            }
+            return count == 0 ? Double.NaN : sum / count;
+        } finally {
+            endQuery(event, "computeAverage", averageLatency, start);
+        }
     }
 
     /**
-     * Паралельний відбір значень за критерієм (наприклад, більше 10)
+     * Сума і кількість з одного знімка шарду (або з поточної статистики, якщо вона ведеться)
      */
+    private static double[] sumAndCount(ComputationManager shard) {
+        if (shard.isIncremental()) {
+            DataStats stats = shard.summarize();
+            return new double[] {stats.getSum(), stats.getCount()};
+        }
+        DataSnapshot snapshot = shard.snapshot();
+        return new double[] {snapshot.sum(), snapshot.size()};
+    }
+
+    @Override
+    public DataStats summarize() {
+        QueryEvent event = beginQuery();
+        long start = System.nanoTime();
+        try {
+            StatsAccumulator total = new StatsAccumulator();
+            for (DataStats partial : query(ComputationManager::summarize)) {
+                total.merge(StatsAccumulator.of(partial));
+            }
+            return total.toStats();
+        } finally {
+            endQuery(event, "summarize", summarizeLatency, start);
+        }
+    }
+
+    @Override
     public List<Double> filterByCriterion(double threshold) {
-        return data.parallelStream().filter(value -> value > threshold).collect(Collectors.toList());
+        QueryEvent event = beginQuery();
+        long start = System.nanoTime();
+        try {
+            List<double[]> partials = query(shard -> shard.filterValues(threshold));
+            int size = 0;
+            for (double[] partial : partials) {
+                size += partial.length;
+            }
+            List<Double> result = new ArrayList<>(size);
+            for (double[] partial : partials) {
+                for (double value : partial) {
+                    result.add(value);
+                }
+            }
+            return result;
+        } finally {
+            endQuery(event, "filterByCriterion", filterLatency, start);
+        }
+    }
+
+    /**
+     * Кількість значень > threshold
+     */
+    public long countAbove(double threshold) {
+        long count = 0;
+        for (long partial : query(shard -> shard.countAbove(threshold))) {
+            count += partial;
+        }
+        return count;
+    }
+
+    /**
+     * Виконання часткового запиту в пулі кожного шарду
+     */
+    private <T> List<T> query(java.util.function.Function<ComputationManager, T> partial) {
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            ComputationManager shard = shards[i];
+            tasks.add(executors[i].submit(() -> partial.apply(shard)));
+        }
+        List<T> results = new ArrayList<>(shards.length);
+        for (ForkJoinTask<T> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        for (ForkJoinPool executor : executors) {
+            executor.shutdown();
+        }
     }
 }
 
@@ -52,60 +2250,476 @@ interface Task {
     void execute();
 }
 
+/**
+ * Ідемпотентне завдання, однакові екземпляри якого можна виконати один раз.
+ * Завдання з рівними ключами вважаються однаковими.
+ */
+interface CoalescableTask extends Task {
+    Object coalesceKey();
+}
+
 /**
  * Клас, що реалізує завдання обчислення статистики
  */
-class StatsTask implements Task {
-    private ComputationManager manager;
+class StatsTask implements CoalescableTask {
+    private static final long[] WINDOW_MILLIS = {1_000, 60_000, 3_600_000};
+    private static final String[] WINDOW_LABELS = {"За останню секунду: ", "За останню хвилину: ", "За останню годину: "};
+
+    private ComputationEngine manager;
+    private final long dataVersion;
 
-    public StatsTask(ComputationManager manager) {
+    public StatsTask(ComputationEngine manager) {
         this.manager = manager;
+        this.dataVersion = manager.dataVersion();
+    }
+
+    /**
+     * Запити статистики одного менеджера над тією самою версією даних дають однаковий результат
+     */
+    @Override
+    public Object coalesceKey() {
+        return new Key(manager, dataVersion);
+    }
+
+    private static final class Key {
+        private final ComputationEngine manager;
+        private final long dataVersion;
+
+        Key(ComputationEngine manager, long dataVersion) {
+            this.manager = manager;
+            this.dataVersion = dataVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return manager == other.manager && dataVersion == other.dataVersion;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(manager) * 31 + Long.hashCode(dataVersion);
+        }
     }
 
     @Override
     public void execute() {
+        DataStats stats = manager.summarize();
         System.out.println("Статистична обробка даних...");
-        System.out.println("Мінімум: " + manager.findMin());
-        System.out.println("Максимум: " + manager.findMax());
-        System.out.println("Середнє значення: " + manager.computeAverage());
+        System.out.println("Кількість: " + stats.getCount());
+        System.out.println("Мінімум: " + stats.getMin());
+        System.out.println("Максимум: " + stats.getMax());
+        System.out.println("Середнє значення: " + stats.getMean());
+        System.out.println("Стандартне відхилення: " + stats.getStdDev());
+        if (manager instanceof ComputationManager && ((ComputationManager) manager).isWindowed()) {
+            ComputationManager windowed = (ComputationManager) manager;
+            for (int i = 0; i < WINDOW_MILLIS.length; i++) {
+                if (windowed.coversWindow(WINDOW_MILLIS[i])) {
+                    System.out.println(WINDOW_LABELS[i] + windowed.windowStats(WINDOW_MILLIS[i]));
+                }
+            }
+        }
     }
 }
 
 /**
- * Клас управління чергою завдань (Worker Thread)
+ * Режим виконання завдань у TaskQueue
+ */
+enum SchedulerMode {
+    /** Окремий віртуальний потік на кожне завдання (JDK 21+, інакше кешований пул) */
+    VIRTUAL_THREADS,
+    /** ForkJoinPool з перехопленням роботи між потоками */
+    WORK_STEALING,
+    /** Фіксований пул платформних потоків */
+    BOUNDED_POOL
+}
+
+/**
+ * Поведінка TaskQueue при заповненій черзі
+ */
+enum RejectionPolicy {
+    /** Очікувати звільнення місця (зворотний тиск на виробника) */
+    BLOCK,
+    /** Кинути RejectedExecutionException */
+    ABORT,
+    /** Виконати завдання в потоці, що його додає */
+    CALLER_RUNS,
+    /** Відкинути завдання, завершивши його результат з помилкою */
+    DISCARD
+}
+
+/**
+ * Клас управління чергою завдань (Worker Thread).
+ * Завдання потрапляють в обмежену чергу, з якої диспетчер передає їх виконавцю
+ * обраного режиму, не перевищуючи задану кількість одночасно виконуваних завдань.
  */
 class TaskQueue {
-    private final BlockingQueue<Task> taskQueue = new LinkedBlockingQueue<>();
-    private final ExecutorService workerPool = Executors.newFixedThreadPool(2); // Два робочих потоки
+    /**
+     * Завдання в черзі разом з його результатом
+     */
+    static final class ScheduledTask {
+        final Task task;
+        final Object key;
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        final long enqueuedAt = System.nanoTime();
+
+        ScheduledTask(Task task) {
+            this.task = task;
+            this.key = task instanceof CoalescableTask ? ((CoalescableTask) task).coalesceKey() : null;
+        }
+    }
+
+    private static final ScheduledTask STOP = new ScheduledTask(() -> { });
+    private static final int MAX_BATCH = 64;
+
+    private final BlockingQueue<ScheduledTask> taskQueue;
+    private final ExecutorService executor;
+    private final Semaphore running;
+    private final RejectionPolicy rejectionPolicy;
+    private final Thread dispatcher;
+    private final Map<Object, ScheduledTask> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedTasks = new AtomicLong();
+    private volatile boolean accepting = true;
+    private boolean stopQueued;
+    // Завдання пакета, які диспетчер не встиг передати виконавцю до переривання
+    private final List<ScheduledTask> undispatched = new ArrayList<>();
+    private final Metrics metrics = new Metrics("TaskQueue", Integer.toHexString(System.identityHashCode(this)));
+    private final LongAdder submitted = metrics.counter("submitted");
+    private final LongAdder completed = metrics.counter("completed");
+    private final LongAdder failed = metrics.counter("failed");
+    private final LongAdder rejected = metrics.counter("rejected");
+    private final LatencyHistogram waitTime = metrics.histogram("taskWait");
+    private final LatencyHistogram runTime = metrics.histogram("taskRun");
 
     public TaskQueue() {
-        for (int i = 0; i < 2; i++) {
-            workerPool.execute(this::processTasks);
+        this(SchedulerMode.BOUNDED_POOL, Runtime.getRuntime().availableProcessors(), 1024, RejectionPolicy.BLOCK);
+    }
+
+    /**
+     * @param mode            режим виконання
+     * @param parallelism     максимальна кількість одночасно виконуваних завдань
+     * @param capacity        розмір черги очікування
+     * @param rejectionPolicy поведінка при заповненій черзі
+     */
+    public TaskQueue(SchedulerMode mode, int parallelism, int capacity, RejectionPolicy rejectionPolicy) {
+        if (parallelism < 1 || capacity < 1) {
+            throw new IllegalArgumentException("parallelism and capacity must be positive");
+        }
+        this.taskQueue = new ArrayBlockingQueue<>(capacity);
+        this.executor = createExecutor(mode, parallelism);
+        this.running = new Semaphore(parallelism);
+        this.rejectionPolicy = rejectionPolicy;
+        metrics.gauge("queueDepth", taskQueue::size);
+        metrics.gauge("runningTasks", () -> parallelism - running.availablePermits());
+        metrics.gauge("coalesced", coalescedTasks::get);
+        this.dispatcher = new Thread(this::processTasks, "task-dispatcher");
+        this.dispatcher.start();
+    }
+
+    /**
+     * Метрики: глибина черги, лічильники завдань, час очікування та виконання
+     */
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    private static ExecutorService createExecutor(SchedulerMode mode, int parallelism) {
+        switch (mode) {
+            case VIRTUAL_THREADS:
+                try {
+                    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    return Executors.newCachedThreadPool(); // Віртуальні потоки недоступні у цій версії JDK
+                }
+            case WORK_STEALING:
+                return new ForkJoinPool(parallelism);
+            case BOUNDED_POOL:
+            default:
+                return Executors.newFixedThreadPool(parallelism);
         }
     }
 
     public void addTask(Task task) {
-        try {
-            taskQueue.put(task);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        submit(task);
+    }
+
+    /**
+     * Додавання завдання до черги
+     * @return результат, що завершується після виконання завдання
+     */
+    public CompletableFuture<Void> submit(Task task) {
+        if (!accepting) {
+            rejected.increment();
+            throw new RejectedExecutionException("TaskQueue is shut down");
+        }
+        ScheduledTask scheduled = new ScheduledTask(task);
+        submitted.increment();
+        if (taskQueue.offer(scheduled)) {
+            return checkEnqueued(scheduled);
+        }
+        switch (rejectionPolicy) {
+            case BLOCK:
+                try {
+                    taskQueue.put(scheduled);
+                    return checkEnqueued(scheduled);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    scheduled.result.completeExceptionally(e);
+                }
+                break;
+            case CALLER_RUNS:
+                run(scheduled);
+                break;
+            case DISCARD:
+                rejected.increment();
+                scheduled.result.completeExceptionally(new RejectedExecutionException("Task queue is full"));
+                break;
+            case ABORT:
+            default:
+                rejected.increment();
+                throw new RejectedExecutionException("Task queue is full");
+        }
+        return scheduled.result;
+    }
+
+    /**
+     * Зупинка могла статися, поки завдання ставилося в чергу (зокрема поки виробник чекав у put):
+     * якщо його ще ніхто не забрав, після зупинки його вже ніхто не виконає, тому воно відхиляється.
+     * Інакше його забрав диспетчер або rejectLateTasks/shutdownNow, які й завершать результат.
+     */
+    private CompletableFuture<Void> checkEnqueued(ScheduledTask scheduled) {
+        if (!accepting && taskQueue.remove(scheduled)) {
+            rejected.increment();
+            scheduled.result.completeExceptionally(new RejectedExecutionException("TaskQueue is shut down"));
         }
+        return scheduled.result;
+    }
+
+    /**
+     * Кількість завдань, що очікують виконання
+     */
+    public int pendingTasks() {
+        return taskQueue.size();
+    }
+
+    /**
+     * Кількість завдань, на які відповіли результатом іншого однакового завдання
+     */
+    public long coalescedTasks() {
+        return coalescedTasks.get();
     }
 
+    /**
+     * Диспетчер забирає з черги одразу пакет завдань і об'єднує однакові:
+     * всі вони отримують результат одного виконання
+     */
     private void processTasks() {
-        while (true) {
+        List<ScheduledTask> batch = new ArrayList<>(MAX_BATCH);
+        boolean stopping = false;
+        while (!stopping) {
+            int next = 0;
             try {
-                Task task = taskQueue.take();
-                task.execute();
+                batch.add(taskQueue.take());
+                taskQueue.drainTo(batch, MAX_BATCH - 1);
+                for (; next < batch.size(); next++) {
+                    ScheduledTask scheduled = batch.get(next);
+                    if (scheduled == STOP) {
+                        stopping = true;
+                    } else if (!coalesce(scheduled)) {
+                        dispatch(scheduled);
+                    }
+                }
             } catch (InterruptedException e) {
+                // shutdownNow: решта пакета, включно із завданням, що чекало дозволу, не запускається
                 Thread.currentThread().interrupt();
+                synchronized (undispatched) {
+                    for (ScheduledTask scheduled : batch.subList(next, batch.size())) {
+                        if (scheduled != STOP) {
+                            scheduled.result.cancel(false);
+                            undispatched.add(scheduled);
+                        }
+                    }
+                }
                 break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Приєднання завдання до вже запланованого однакового завдання
+     */
+    private boolean coalesce(ScheduledTask scheduled) {
+        if (scheduled.key == null) {
+            return false;
+        }
+        ScheduledTask leader = inFlight.putIfAbsent(scheduled.key, scheduled);
+        if (leader == null) {
+            scheduled.result.whenComplete((ignored, error) -> inFlight.remove(scheduled.key, scheduled));
+            return false;
+        }
+        coalescedTasks.incrementAndGet();
+        leader.result.whenComplete((ignored, error) -> {
+            if (error != null) {
+                scheduled.result.completeExceptionally(error);
+            } else {
+                scheduled.result.complete(null);
+            }
+        });
+        return true;
+    }
+
+    private void dispatch(ScheduledTask scheduled) throws InterruptedException {
+        running.acquire();
+        try {
+            executor.execute(() -> {
+                try {
+                    run(scheduled);
+                } finally {
+                    running.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.release();
+            rejected.increment();
+            scheduled.result.completeExceptionally(e);
+        }
+    }
+
+    private void run(ScheduledTask scheduled) {
+        if (scheduled.result.isDone()) {
+            return;
+        }
+        TaskExecutionEvent event = new TaskExecutionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        waitTime.record(start - scheduled.enqueuedAt);
+        Throwable error = null;
+        try {
+            scheduled.task.execute();
+        } catch (Throwable e) {
+            error = e;
+        } finally {
+            // Нові однакові завдання не повинні приєднуватись до вже завершеного виконання
+            if (scheduled.key != null) {
+                inFlight.remove(scheduled.key, scheduled);
+            }
+            if (error == null) {
+                scheduled.result.complete(null);
+            } else {
+                scheduled.result.completeExceptionally(error);
             }
+            runTime.record(System.nanoTime() - start);
+            (error == null ? completed : failed).increment();
+            if (event.shouldCommit()) {
+                event.task = scheduled.task.getClass().getName();
+                event.queueWait = start - scheduled.enqueuedAt;
+                event.failed = error != null;
+                event.commit();
+            }
+        }
+        if (error instanceof Error) {
+            throw (Error) error; // Результат уже завершено, але фатальну помилку не приховуємо
+        }
+    }
+
+    /**
+     * Припинення прийому нових завдань з виконанням усіх, що вже в черзі
+     * @return true, якщо всі завдання завершились до закінчення тайм-ауту
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        long start = System.nanoTime();
+        long budget = unit.toNanos(timeout);
+        if (!stopAccepting(budget)) {
+            return false; // Черга так і не звільнилась для сигналу зупинки
+        }
+        TimeUnit.NANOSECONDS.timedJoin(dispatcher, budget - (System.nanoTime() - start));
+        if (dispatcher.isAlive()) {
+            return false;
         }
+        rejectLateTasks();
+        executor.shutdown();
+        return executor.awaitTermination(budget - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
     }
 
+    /**
+     * Завершення роботи з очікуванням виконання черги
+     */
     public void shutdown() {
-        workerPool.shutdown();
+        try {
+            stopAccepting(Long.MAX_VALUE);
+            dispatcher.join();
+            rejectLateTasks();
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shutdownNow();
+        }
+    }
+
+    /**
+     * Припинення прийому й постановка сигналу зупинки в чергу не довше за timeoutNanos
+     * @return false, якщо черга залишалась заповненою і сигнал не поставлено (повторний виклик спробує ще раз)
+     */
+    private synchronized boolean stopAccepting(long timeoutNanos) throws InterruptedException {
+        accepting = false;
+        if (!stopQueued) {
+            stopQueued = taskQueue.offer(STOP, timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+        return stopQueued;
+    }
+
+    /**
+     * Завдання, що потрапили в чергу одночасно із зупинкою, вже не будуть виконані
+     */
+    private void rejectLateTasks() {
+        List<ScheduledTask> late = new ArrayList<>();
+        taskQueue.drainTo(late);
+        for (ScheduledTask scheduled : late) {
+            rejected.increment();
+            scheduled.result.completeExceptionally(new RejectedExecutionException("TaskQueue is shut down"));
+        }
+    }
+
+    /**
+     * Негайна зупинка: переривання робочих потоків і скасування завдань у черзі
+     * та вже вибраних диспетчером, але не переданих виконавцю
+     * @return завдання, що так і не були запущені; їхні результати скасовано
+     */
+    public List<Task> shutdownNow() {
+        accepting = false;
+        dispatcher.interrupt();
+        boolean interrupted = false;
+        while (dispatcher.isAlive()) {
+            try {
+                dispatcher.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        List<ScheduledTask> remaining = new ArrayList<>();
+        synchronized (undispatched) {
+            remaining.addAll(undispatched);
+            undispatched.clear();
+        }
+        taskQueue.drainTo(remaining);
+        List<Task> notStarted = new ArrayList<>();
+        for (ScheduledTask scheduled : remaining) {
+            if (scheduled != STOP) {
+                scheduled.result.cancel(false);
+                notStarted.add(scheduled.task);
+            }
+        }
+        executor.shutdownNow();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return notStarted;
     }
 }
 
@@ -115,8 +2729,22 @@ class TaskQueue {
 public class praktika6 {
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
-        ComputationManager manager = new ComputationManager();
+        ComputationManager manager = new ComputationManager(true);
         TaskQueue taskQueue = new TaskQueue();
+        manager.enableWindowing(100, 60_000);
+        manager.enableWindowing(10_000, 3_600_000);
+        try {
+            manager.metrics().registerMBean();
+            taskQueue.metrics().registerMBean();
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        // Періодичний вивід метрик у JSON: -Dmetrics.period=<секунди>
+        long metricsPeriod = Long.getLong("metrics.period", 0);
+        if (metricsPeriod > 0) {
+            manager.metrics().startReporter(metricsPeriod, TimeUnit.SECONDS, true, System.err);
+            taskQueue.metrics().startReporter(metricsPeriod, TimeUnit.SECONDS, true, System.err);
+        }
 
         while (true) {
             System.out.println("\nМеню:");